@@ -2,6 +2,7 @@
  * Tracer reducer updates the state that stores the result of a tracing process and keep track of the tracing index.
  */
 import axios from 'axios'
+import firebase from 'firebase/app'
 import * as tracer from '../../types/tracer'
 import { Request } from '../../types/tracer'
 import { actions as storeActions, DefaultAsyncAction } from '../Store'
@@ -55,6 +56,9 @@ const trace = (): DefaultAsyncAction => async (dispatch, getState) => {
             input: input.content.join('\n'),
             steps: user.user ? 1000 : 400
         }
+        // the tracer schedules signed in users by the verified id token, requests without token are anonymous
+        const currentUser = firebase.auth().currentUser
+        const token = user.user && currentUser ? await currentUser.getIdToken() : undefined
         const onProgress = (event: ProgressEvent) => {
             const phase = event.target instanceof XMLHttpRequestUpload ? 'upload' : 'download'
             const progress = event.loaded / event.total
@@ -63,6 +67,7 @@ const trace = (): DefaultAsyncAction => async (dispatch, getState) => {
         const startTime = Date.now()
         const response = (
             await axios.post<tracer.Response>(tracerUrl, request, {
+                headers: token ? { Authorization: `Bearer ${token}` } : {},
                 onUploadProgress: onProgress,
                 onDownloadProgress: onProgress
             })
@@ -0,0 +1,16 @@
+public class DeepRecursion {
+    public static void main(String[] args) {
+        System.out.println(sum(300));
+        System.out.println(fib(12));
+    }
+
+    static int sum(int n) {
+        if (n == 0) return 0;
+        return n + sum(n - 1);
+    }
+
+    static int fib(int n) {
+        if (n < 2) return n;
+        return fib(n - 1) + fib(n - 2);
+    }
+}
@@ -0,0 +1,10 @@
+public class PrintLoop {
+    public static void main(String[] args) {
+        for (var i = 1; i <= 12; i++) {
+            for (var j = 1; j <= 12; j++) {
+                System.out.print(i * j);
+                System.out.print(j < 12 ? "\t" : "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Arrays;
+import java.util.Scanner;
+
+public class Sorting {
+    public static void main(String[] args) {
+        var scanner = new Scanner(System.in);
+        var n = scanner.nextInt();
+        var values = new int[n];
+        for (var i = 0; i < n; i++) {
+            values[i] = scanner.nextInt();
+        }
+        var bubble = Arrays.copyOf(values, n);
+        bubbleSort(bubble);
+        var insertion = Arrays.copyOf(values, n);
+        insertionSort(insertion);
+        var merge = Arrays.copyOf(values, n);
+        mergeSort(merge, 0, n);
+        System.out.println(Arrays.toString(merge));
+    }
+
+    static void bubbleSort(int[] values) {
+        for (var i = 0; i < values.length; i++) {
+            for (var j = 0; j < values.length - i - 1; j++) {
+                if (values[j] > values[j + 1]) {
+                    var tmp = values[j];
+                    values[j] = values[j + 1];
+                    values[j + 1] = tmp;
+                }
+            }
+        }
+    }
+
+    static void insertionSort(int[] values) {
+        for (var i = 1; i < values.length; i++) {
+            var key = values[i];
+            var j = i - 1;
+            while (j >= 0 && values[j] > key) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = key;
+        }
+    }
+
+    static void mergeSort(int[] values, int start, int end) {
+        if (end - start < 2) return;
+        var middle = (start + end) / 2;
+        mergeSort(values, start, middle);
+        mergeSort(values, middle, end);
+        var merged = new int[end - start];
+        var i = start;
+        var j = middle;
+        var k = 0;
+        while (i < middle && j < end) {
+            merged[k++] = values[i] <= values[j] ? values[i++] : values[j++];
+        }
+        while (i < middle) merged[k++] = values[i++];
+        while (j < end) merged[k++] = values[j++];
+        System.arraycopy(merged, 0, values, start, merged.length);
+    }
+}
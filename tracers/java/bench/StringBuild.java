@@ -0,0 +1,24 @@
+import java.util.Scanner;
+
+public class StringBuild {
+    public static void main(String[] args) {
+        var scanner = new Scanner(System.in);
+        var text = scanner.nextLine();
+        var reversed = new StringBuilder();
+        for (var i = text.length() - 1; i >= 0; i--) {
+            reversed.append(text.charAt(i));
+        }
+        var camel = "";
+        var upper = false;
+        for (var c : text.toCharArray()) {
+            if (c == ' ') {
+                upper = true;
+            } else {
+                camel += upper ? Character.toUpperCase(c) : c;
+                upper = false;
+            }
+        }
+        System.out.println(reversed);
+        System.out.println(camel);
+    }
+}
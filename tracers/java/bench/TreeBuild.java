@@ -0,0 +1,44 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+public class TreeBuild {
+    static class Node {
+        int value;
+        Node left;
+        Node right;
+
+        Node(int value) {
+            this.value = value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(System.in));
+        var n = Integer.parseInt(reader.readLine().trim());
+        var values = reader.readLine().trim().split(" ");
+        Node root = null;
+        for (var i = 0; i < n; i++) {
+            root = insert(root, Integer.parseInt(values[i]));
+        }
+        System.out.println("height: " + height(root));
+        System.out.println("sum: " + sum(root));
+    }
+
+    static Node insert(Node node, int value) {
+        if (node == null) return new Node(value);
+        if (value < node.value) node.left = insert(node.left, value);
+        else node.right = insert(node.right, value);
+        return node;
+    }
+
+    static int height(Node node) {
+        if (node == null) return 0;
+        return 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    static int sum(Node node) {
+        if (node == null) return 0;
+        return node.value + sum(node.left) + sum(node.right);
+    }
+}
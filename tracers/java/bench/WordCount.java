@@ -0,0 +1,21 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+public class WordCount {
+    public static void main(String[] args) {
+        var scanner = new Scanner(System.in);
+        Map<String, Integer> counts = new HashMap<>();
+        while (scanner.hasNext()) {
+            var word = scanner.next().toLowerCase();
+            counts.put(word, counts.getOrDefault(word, 0) + 1);
+        }
+        String best = null;
+        for (var entry : counts.entrySet()) {
+            if (best == null || entry.getValue() > counts.get(best)) {
+                best = entry.getKey();
+            }
+        }
+        System.out.println(best + " " + counts.get(best));
+    }
+}
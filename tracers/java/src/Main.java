@@ -1,23 +1,41 @@
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Collectors;
 import com.google.cloud.functions.HttpFunction;
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import tracer.Authenticator;
+import tracer.BatchTracer;
+import tracer.Events;
+import tracer.Recorder;
+import tracer.Replay;
+import tracer.Scheduler;
+import tracer.Session;
 import tracer.Tracer;
+import tracer.WarmUp;
 
 
 public class Main implements HttpFunction {
+    private static final Scheduler scheduler = Scheduler.fromEnvironment();
+    private static final Authenticator authenticator = Authenticator.fromEnvironment();
+
+    // the functions framework loads the function class before serving the first request
+    static {
+        WarmUp.run();
+    }
 
     @Override
     public void service(HttpRequest request, HttpResponse response) throws Exception {
         response.appendHeader("Access-Control-Allow-Origin", "*");
         response.appendHeader("Access-Control-Allow-Methods", "POST");
-        response.appendHeader("Access-Control-Allow-Headers", "Content-Type");
+        response.appendHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
         response.appendHeader("Access-Control-Max-Age", "3600");
+        response.appendHeader("Access-Control-Expose-Headers", "Retry-After");
         response.appendHeader("Content-Type", "application/json");
         var method = request.getMethod().toUpperCase();
         if (method.equals("OPTIONS")) {
@@ -38,12 +56,81 @@ public class Main implements HttpFunction {
             response.getWriter().append("empty body").close();
             return;
         }
-        var responseBody = trace(requestBody, false);
+        String responseBody;
+        try {
+            var session = requestBody.get("session");
+            // the VM of a live session already counts against the scheduler capacity
+            if (session != null && session.isJsonPrimitive() && session.getAsJsonPrimitive().isString())
+                responseBody = trace(requestBody, false, null);
+            else {
+                // only users identified by a verified token have a tenant and the user class, the rest are anonymous
+                var tenant = authenticator.user(request.getFirstHeader("Authorization").orElse(null));
+                var priority = tenant != null ? "user" : "anonymous";
+                var deadline = System.currentTimeMillis() + (
+                    requestBody.has("deadline")
+                        ? Math.min(Math.max(0, requestBody.get("deadline").getAsLong()), 50000)
+                        : 50000
+                );
+                var permits = requestBody.has("inputs") ? concurrency(requestBody) : 1;
+                try (var ticket = scheduler.acquire(tenant, priority, deadline, permits)) {
+                    responseBody = trace(requestBody, false, ticket);
+                }
+            }
+        } catch (Scheduler.RejectedException e) {
+            response.setStatusCode(429);
+            response.appendHeader("Retry-After", Long.toString(e.retryAfter));
+            response.getWriter().append(e.getMessage()).close();
+            return;
+        } catch (Session.UnavailableException e) {
+            response.setStatusCode(503);
+            response.getWriter().append(e.getMessage()).close();
+            return;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // gson throws IllegalStateException for properties of unexpected types
+            response.setStatusCode(400);
+            response.getWriter().append(e.getMessage()).close();
+            return;
+        }
         response.setStatusCode(200);
         response.getWriter().append(responseBody).close();
     }
 
-    public static String trace(JsonObject request, boolean pretty) {
+    public static String trace(JsonObject request, boolean pretty)
+        throws Session.UnavailableException,
+        InterruptedException {
+        return trace(request, pretty, null);
+    }
+
+    /**
+     * Trace the request under a scheduler ticket, which limits the VMs of a batch to its permits and is retained by a
+     * started session until the session stops.
+     */
+    private static String trace(JsonObject request, boolean pretty, Scheduler.Ticket ticket)
+        throws Session.UnavailableException,
+        InterruptedException {
+        var recording = Recorder.start();
+        try {
+            return traceRequest(request, pretty, ticket);
+        } finally {
+            Recorder.stop(recording);
+        }
+    }
+
+    /**
+     * Number of debugee VMs of a batch request: the requested concurrency (1 to 16, the number of processors by
+     * default), but no more than the inputs.
+     */
+    private static int concurrency(JsonObject request) {
+        var concurrency = request.get("concurrency");
+        var requested = concurrency != null
+            ? Math.min(Math.max(1, concurrency.getAsInt()), 16)
+            : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(requested, request.get("inputs").getAsJsonArray().size()));
+    }
+
+    private static String traceRequest(JsonObject request, boolean pretty, Scheduler.Ticket ticket)
+        throws Session.UnavailableException,
+        InterruptedException {
         var source = request.get("source");
         var input = request.get("input");
         var steps = request.get("steps");
@@ -51,14 +138,60 @@ public class Main implements HttpFunction {
         tracerRequest.addProperty("source", source != null ? source.getAsString() : "");
         tracerRequest.addProperty("input", input != null ? input.getAsString() : "");
         tracerRequest.addProperty("steps", steps != null ? Math.min(Math.max(0, steps.getAsInt()), 10000) : 5000);
-        var tracerResponse = new Tracer(tracerRequest).run();
+        var scope = request.get("scope");
+        if (scope != null) {
+            if (!scope.isJsonObject()) throw new IllegalArgumentException("scope must be an object");
+            tracerRequest.add("scope", scope);
+        }
+        var coalesce = request.get("coalesce");
+        if (coalesce != null) {
+            try {
+                Tracer.Coalesce.valueOf(coalesce.getAsString().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown coalesce policy: " + coalesce.getAsString());
+            }
+            tracerRequest.addProperty("coalesce", coalesce.getAsString());
+        }
+        var limits = request.get("limits");
+        if (limits != null) {
+            if (!limits.isJsonObject()) throw new IllegalArgumentException("limits must be an object");
+            tracerRequest.add("limits", limits);
+        }
+        var lazy = request.get("lazy");
+        if (lazy != null) tracerRequest.addProperty("lazy", lazy.getAsBoolean());
+        JsonObject tracerResponse;
+        var session = request.get("session");
+        if (session != null && session.getAsJsonPrimitive().isString())
+            tracerResponse = Session.resume(session.getAsString(), tracerRequest.get("steps").getAsInt());
+        else if (session != null && session.getAsBoolean())
+            tracerResponse = Session.start(tracerRequest, ticket);
+        else if (request.has("snapshots")) {
+            if (!request.get("snapshots").isJsonArray()) throw new IllegalArgumentException("snapshots must be an array");
+            tracerRequest.add("snapshots", request.get("snapshots"));
+            tracerResponse = Replay.run(tracerRequest);
+        } else if (request.has("inputs")) {
+            var inputs = new JsonArray();
+            request.get("inputs").getAsJsonArray().forEach(i -> inputs.add(i.getAsString()));
+            if (inputs.size() > 50) throw new IllegalArgumentException("too many inputs, maximum allowed: 50");
+            tracerRequest.add("inputs", inputs);
+            tracerRequest.addProperty("concurrency", ticket != null ? ticket.permits : concurrency(request));
+            tracerResponse = new BatchTracer(tracerRequest).run();
+        } else tracerResponse = new Tracer(tracerRequest).run();
         var builder = new GsonBuilder();
         if (pretty) builder.setPrettyPrinting();
+        var serializeEvent = new Events.Serialize();
+        serializeEvent.begin();
         var stringResponse = builder.create().toJson(tracerResponse);
+        serializeEvent.end();
+        // encoding the response only to measure it is not free, so it is only done if the event is recorded
+        if (serializeEvent.shouldCommit()) {
+            serializeEvent.bytes = stringResponse.getBytes(StandardCharsets.UTF_8).length;
+            serializeEvent.commit();
+        }
         return stringResponse;
     }
 
-    public static void test() {
+    public static void test() throws Session.UnavailableException, InterruptedException {
         var source = new BufferedReader(new InputStreamReader(Main.class.getResourceAsStream("Test.java")))
             .lines()
             .collect(Collectors.joining("\n"));
@@ -72,7 +205,7 @@ public class Main implements HttpFunction {
         System.out.println(trace(request, true));
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Session.UnavailableException, InterruptedException {
         test();
     }
 }
@@ -0,0 +1,138 @@
+package tracer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+/**
+ * Identifies the signed in users of the web client by their Firebase ID tokens (header Authorization: Bearer token).
+ * A token identifies its subject (the user id) if it is signed with RS256 by one of the Google securetoken
+ * certificates, its audience is the Firebase project, its issuer is the securetoken service of the project and it is
+ * not expired. The certificates are downloaded when needed and cached for the time allowed by their response. Without
+ * a project (the environment variable TRACER_FIREBASE_PROJECT) no user is identified.
+ */
+public class Authenticator {
+    static final String CERTIFICATES_URL =
+        "https://www.googleapis.com/robot/v1/metadata/x509/securetoken@system.gserviceaccount.com";
+    private static final Pattern maxAge = Pattern.compile("max-age=(\\d+)");
+
+    private final String project;
+    private final HttpClient client;
+    private Map<String, PublicKey> keys;
+    private long keysExpiration;
+
+    /**
+     * Create the authenticator.
+     *
+     * @param project Firebase project id, or null to identify no user
+     */
+    public Authenticator(String project) {
+        this.project = project;
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        keys = Map.of();
+        keysExpiration = 0;
+    }
+
+    /**
+     * Create the authenticator of the Firebase project in the environment variable TRACER_FIREBASE_PROJECT.
+     *
+     * @return the authenticator
+     */
+    public static Authenticator fromEnvironment() {
+        var project = System.getenv("TRACER_FIREBASE_PROJECT");
+        return new Authenticator(project == null || project.isBlank() ? null : project);
+    }
+
+    /**
+     * Identify the user of a request.
+     *
+     * @param authorization value of the Authorization header of the request, or null
+     * @return the user id, or null if the request has no valid token
+     */
+    public String user(String authorization) {
+        if (project == null || authorization == null || !authorization.startsWith("Bearer ")) return null;
+        var parts = authorization.substring("Bearer ".length()).trim().split("\\.");
+        if (parts.length != 3) return null;
+        try {
+            var header = json(parts[0]);
+            var claims = json(parts[1]);
+            if (!string(header, "alg").equals("RS256")) return null;
+            var key = key(string(header, "kid"));
+            if (key == null) return null;
+            var signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(key);
+            signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(Base64.getUrlDecoder().decode(parts[2]))) return null;
+
+            var now = System.currentTimeMillis() / 1000;
+            if (!string(claims, "aud").equals(project)) return null;
+            if (!string(claims, "iss").equals("https://securetoken.google.com/" + project)) return null;
+            if (!claims.has("exp") || claims.get("exp").getAsLong() <= now) return null;
+            if (!claims.has("iat") || claims.get("iat").getAsLong() > now) return null;
+            var user = string(claims, "sub");
+            return user.isEmpty() ? null : user;
+        } catch (RuntimeException | GeneralSecurityException | IOException e) {
+            // malformed token or certificates unavailable
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static JsonObject json(String part) {
+        var decoded = new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+        return new Gson().fromJson(decoded, JsonObject.class);
+    }
+
+    private static String string(JsonObject object, String name) {
+        return object.has(name) ? object.get(name).getAsString() : "";
+    }
+
+    /**
+     * Public key of the certificate with the id, downloading the certificates if the cached ones expired. A failed
+     * download is retried after a minute, so an unreachable certificates service does not delay every request.
+     */
+    private synchronized PublicKey key(String id)
+        throws IOException,
+        InterruptedException,
+        GeneralSecurityException {
+        if (System.currentTimeMillis() >= keysExpiration) {
+            keysExpiration = System.currentTimeMillis() + 60000;
+            var response = client.send(
+                HttpRequest.newBuilder(URI.create(CERTIFICATES_URL)).timeout(Duration.ofSeconds(5)).build(),
+                HttpResponse.BodyHandlers.ofString()
+            );
+            if (response.statusCode() != 200) throw new IOException("certificates status " + response.statusCode());
+            var factory = CertificateFactory.getInstance("X.509");
+            var certificates = new Gson().fromJson(response.body(), JsonObject.class);
+            var downloaded = new HashMap<String, PublicKey>();
+            for (var entry : certificates.entrySet()) {
+                var pem = entry.getValue().getAsString().getBytes(StandardCharsets.US_ASCII);
+                var certificate = factory.generateCertificate(new ByteArrayInputStream(pem));
+                downloaded.put(entry.getKey(), certificate.getPublicKey());
+            }
+            var matcher = maxAge.matcher(response.headers().firstValue("Cache-Control").orElse(""));
+            keys = downloaded;
+            if (matcher.find()) keysExpiration = System.currentTimeMillis() + Long.parseLong(matcher.group(1)) * 1000;
+        }
+        return keys.get(id);
+    }
+}
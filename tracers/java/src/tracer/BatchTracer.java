@@ -0,0 +1,105 @@
+package tracer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Traces one program against many inputs.
+ */
+public class BatchTracer {
+    private final String source;
+    private final List<String> inputs;
+    private final int steps;
+    private final int concurrency;
+    private final JsonElement scope;
+    private final JsonElement coalesce;
+    private final JsonElement lazy;
+    private final JsonElement limits;
+
+    /**
+     * Create the batch tracer with the request, which contains the program source, a list of inputs, the steps to run
+     * for each input and the maximum number of debugee VMs running at the same time.
+     *
+     * @param request request
+     */
+    public BatchTracer(final JsonObject request) {
+        this.source = request.get("source").getAsString();
+        this.inputs = new ArrayList<>();
+        for (final var input : request.get("inputs").getAsJsonArray()) inputs.add(input.getAsString());
+        this.steps = request.get("steps").getAsInt();
+        this.concurrency = request.get("concurrency").getAsInt();
+        this.scope = request.get("scope");
+        this.coalesce = request.get("coalesce");
+        this.lazy = request.get("lazy");
+        this.limits = request.get("limits");
+    }
+
+    /**
+     * Compile the source once and trace it against every input. Each input runs in its own Tracer and debugee VM,
+     * at most concurrency of them at the same time. If the compilation fails, every result contains the compilation
+     * error. The tracers are created before any of them runs, so invalid request options fail the whole batch.
+     *
+     * @return the batch response, with one tracer response per input, in the same order of the inputs
+     * @throws RuntimeException if the request options are invalid (ex.: IllegalStateException for a scope property
+     *                          of an unexpected type)
+     */
+    public JsonObject run() {
+        final var project = new Executor().compile(source);
+        final var tracers = new ArrayList<Tracer>(inputs.size());
+        for (final var input : inputs) {
+            final var request = new JsonObject();
+            request.addProperty("source", source);
+            request.addProperty("input", input);
+            request.addProperty("steps", steps);
+            if (scope != null) request.add("scope", scope);
+            if (coalesce != null) request.add("coalesce", coalesce);
+            if (lazy != null) request.add("lazy", lazy);
+            if (limits != null) request.add("limits", limits);
+            tracers.add(new Tracer(request, project));
+        }
+        final var pool = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, inputs.size())));
+        final var results = new JsonArray(inputs.size());
+        try {
+            final var futures = new ArrayList<Future<JsonObject>>(inputs.size());
+            for (final var tracer : tracers) futures.add(pool.submit(tracer::run));
+            for (final var future : futures) results.add(await(future));
+        } finally {
+            pool.shutdownNow();
+        }
+        final var response = new JsonObject();
+        response.add("results", results);
+        return response;
+    }
+
+    /**
+     * Wait for a tracer response. Tracers capture their own exceptions, so only interruptions are expected here, which
+     * are reported as a tracer error.
+     *
+     * @param future the tracer response future
+     * @return the tracer response
+     */
+    private JsonElement await(final Future<JsonObject> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            final var error = new JsonObject();
+            error.addProperty("cause", "batch interrupted: " + e.getMessage());
+            final var step = new JsonObject();
+            step.add("error", error);
+            final var steps = new JsonArray();
+            steps.add(step);
+            final var response = new JsonObject();
+            response.add("steps", steps);
+            return response;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package tracer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder events of the tracer phases. Events are only written if a recording is running (see Recorder or
+ * -XX:StartFlightRecording), otherwise committing them has almost no cost.
+ */
+public final class Events {
+
+    private Events() {
+    }
+
+    @Name("tracer.Compile")
+    @Label("Compile")
+    @Category("Tracer")
+    static class Compile extends Event {
+        @Label("Filename")
+        String filename;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("tracer.Launch")
+    @Label("Launch Debugee VM")
+    @Category("Tracer")
+    static class Launch extends Event {
+    }
+
+    @Name("tracer.EventWait")
+    @Label("Wait Debugee Events")
+    @Category("Tracer")
+    static class EventWait extends Event {
+        @Label("Events")
+        int events;
+    }
+
+    @Name("tracer.Inspect")
+    @Label("Inspect")
+    @Category("Tracer")
+    static class Inspect extends Event {
+        @Label("Event")
+        String event;
+
+        @Label("Frames")
+        int frames;
+
+        @Label("Heap Nodes")
+        int heapNodes;
+
+        @Label("JDI Calls")
+        int jdiCalls;
+    }
+
+    @Name("tracer.Serialize")
+    @Label("Serialize Response")
+    @Category("Tracer")
+    public static class Serialize extends Event {
+        @Label("Response Size")
+        @Description("Bytes of the response encoded in UTF-8")
+        @DataAmount
+        public long bytes;
+    }
+}
@@ -1,11 +1,14 @@
 package tracer;
 
+import com.sun.jdi.ReferenceType;
 import com.sun.jdi.ThreadReference;
 import com.sun.jdi.VMDisconnectedException;
 import com.sun.jdi.VirtualMachine;
 import com.sun.jdi.connect.IllegalConnectorArgumentsException;
 import com.sun.jdi.connect.VMStartException;
+import com.sun.jdi.event.ClassPrepareEvent;
 import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
 import com.sun.jdi.event.ThreadStartEvent;
 import com.sun.jdi.event.VMDisconnectEvent;
 import com.sun.jdi.request.EventRequest;
@@ -23,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -35,33 +39,54 @@ import java.util.stream.Stream;
  * Executes source code.
  */
 class Executor {
+    private final boolean lineEvents;
+    private final boolean fieldEvents;
+    private final Governor governor;
 
     /**
-     * Executes the source code in debug mode, allowing interception of the debugee program through hook functions.
+     * Create an executor that produces line, call, return and exception events.
+     */
+    Executor() {
+        this(true, false, new Governor());
+    }
+
+    /**
+     * Create an executor.
      *
-     * @param source    source code
+     * @param lineEvents  if false, line events are not requested and only call, return and exception events are
+     *                    produced
+     * @param fieldEvents if true, modification watchpoint events are also produced for the fields of user classes
+     * @param governor    resource limits of the debugee VM, the debugee is killed when it exceeds any of them
+     */
+    Executor(boolean lineEvents, boolean fieldEvents, Governor governor) {
+        this.lineEvents = lineEvents;
+        this.fieldEvents = fieldEvents;
+        this.governor = governor;
+    }
+
+    /**
+     * Executes an already compiled project in debug mode. The same project can be executed many times, even
+     * concurrently, since each execution launches its own debugee VM and only reads the compiled classes.
+     *
+     * @param project   compiled project, if its compilation failed, the compilation exception is thrown
      * @param trace     consumer called for each produced event.
      * @param inputHook supplier that provides input to the debugee program, called only once.
      * @param printHook consumer called after frames that produce some output in the standard streams.
      * @param lockHook  consumer called if the debugee VM takes more than 1 second to produce an event (stops the
      *                  Executor).
-     * @throws IOException
-     * @throws IllegalConnectorArgumentsException
-     * @throws VMStartException
-     * @throws ApplicationExternalException
+     * @throws Exception
      */
     void execute(
-        String source,
+        Project project,
         LambdaUtils.ConsumerT<Event> trace,
         Supplier<String> inputHook,
         LambdaUtils.ConsumerT<String> printHook,
         LambdaUtils.ConsumerT<String> lockHook
     )
         throws Exception {
-        var filename = getFilename(source);
-        var path = generateProject(source, filename);
-        compileProject(path, filename);
-        var vm = launchVirtualMachine(path, filename);
+        if (project.failure != null) throw project.failure;
+        var path = project.path;
+        var vm = launchVirtualMachine(path, project.filename);
         var allowedThreads = configureEventRequests(vm, path);
         var stdin = vm.process().getOutputStream();
         var stdout = vm.process().getInputStream();
@@ -69,10 +94,17 @@ class Executor {
         stdin.write(inputHook.get().getBytes());
         stdin.flush();
         stdin.close();
+        governor.start(vm.process());
         try {
             outerLoop: while (true) {
+                governor.resumed();
                 vm.resume();
-                var eventSet = vm.eventQueue().remove(1000);
+                var waitEvent = new Events.EventWait();
+                waitEvent.begin();
+                var eventSet = vm.eventQueue().remove(Math.max(1, Math.min(1000, governor.remainingWallMillis())));
+                waitEvent.events = eventSet != null ? eventSet.size() : 0;
+                waitEvent.commit();
+                governor.waited();
                 if (eventSet == null) {
                     lockHook.accept(null);
                     break;
@@ -85,14 +117,27 @@ class Executor {
                         ((ThreadStartEvent) event).thread().interrupt();
                         continue;
                     }
+                    if (event instanceof ClassPrepareEvent) {
+                        watchFields(vm, ((ClassPrepareEvent) event).referenceType());
+                        continue;
+                    }
                     var printAvailable = stdout.available();
                     var errorAvailable = stderr.available();
+                    governor.printed(printAvailable + errorAvailable);
                     if (printAvailable > 0) printHook.accept(new String(stdout.readNBytes(printAvailable)));
                     if (errorAvailable > 0) printHook.accept(new String(stderr.readNBytes(errorAvailable)));
+                    if (event instanceof ExceptionEvent && isOutOfMemory((ExceptionEvent) event))
+                        throw new Governor.LimitExceededException(
+                            "heap",
+                            "heap limit exceeded: " + governor.heapMegabytes + "MB"
+                        );
                     trace.accept(event);
                     if (event instanceof VMDisconnectEvent) break outerLoop;
                 }
             }
+        } catch (Governor.LimitExceededException e) {
+            vm.process().destroyForcibly().waitFor(1, TimeUnit.SECONDS);
+            throw e;
         } catch (RuntimeException e) {
             throw e.getCause() == null ? e : ((Exception) e.getCause());
         } finally {
@@ -104,6 +149,34 @@ class Executor {
         }
     }
 
+    private static boolean isOutOfMemory(ExceptionEvent event) {
+        return event.exception().referenceType().name().equals("java.lang.OutOfMemoryError");
+    }
+
+    /**
+     * Generate and compile the source in a new project. Compilation errors are not thrown, but kept in the project to
+     * be thrown by the executions that use it.
+     *
+     * @param source source code
+     * @return the compiled project
+     */
+    Project compile(String source) {
+        var compileEvent = new Events.Compile();
+        compileEvent.begin();
+        var filename = getFilename(source);
+        compileEvent.filename = filename;
+        try {
+            var path = generateProject(source, filename);
+            compileProject(path, filename);
+            compileEvent.success = true;
+            return new Project(path, filename, null);
+        } catch (IOException | ApplicationExternalException e) {
+            return new Project(null, filename, e);
+        } finally {
+            compileEvent.commit();
+        }
+    }
+
     /**
      * Generate a filename for the source based on its contents. The filename is the name of the class that contains the
      * main method. If not found, Main.java is returned.
@@ -217,9 +290,17 @@ class Executor {
         var connector = vmm.defaultConnector();
         var connectorArguments = connector.defaultArguments();
         connectorArguments.get("suspend").setValue("true");
-        connectorArguments.get("options").setValue("-cp \"" + binPath.toAbsolutePath().toString() + "\"");
+        connectorArguments
+            .get("options")
+            .setValue("-Xmx" + governor.heapMegabytes + "m -cp \"" + binPath.toAbsolutePath().toString() + "\"");
         connectorArguments.get("main").setValue(filename.substring(0, filename.indexOf('.')));
-        return connector.launch(connectorArguments);
+        var launchEvent = new Events.Launch();
+        launchEvent.begin();
+        try {
+            return connector.launch(connectorArguments);
+        } finally {
+            launchEvent.commit();
+        }
     }
 
     /**
@@ -287,12 +368,46 @@ class Executor {
         threadDeathRequest.enable();
         methodEntryRequests.forEach(EventRequest::enable);
         methodExitRequests.forEach(EventRequest::enable);
-        stepRequests.forEach(EventRequest::enable);
+        if (lineEvents) stepRequests.forEach(EventRequest::enable);
         exceptionRequests.forEach(EventRequest::enable);
 
+        // allocations fail mostly inside jdk code (ex.: ArrayList.grow, string concatenation), out of the user classes
+        vm.classesByName("java.lang.OutOfMemoryError").forEach(type -> {
+            var outOfMemoryRequest = vm.eventRequestManager().createExceptionRequest(type, true, true);
+            outOfMemoryRequest.setSuspendPolicy(EventRequest.SUSPEND_ALL);
+            outOfMemoryRequest.enable();
+        });
+
+        // fields can only be watched after their classes are prepared
+        if (fieldEvents && vm.canWatchFieldModification()) {
+            classNames.forEach(className -> {
+                var classPrepareRequest = vm.eventRequestManager().createClassPrepareRequest();
+                classPrepareRequest.setSuspendPolicy(EventRequest.SUSPEND_ALL);
+                classPrepareRequest.addClassFilter(className);
+                classPrepareRequest.enable();
+            });
+        }
+
         return allowedThreadsNames;
     }
 
+    /**
+     * Request modification watchpoint events in the main thread for all fields declared by a user class.
+     *
+     * @param vm   debugee VM
+     * @param type prepared user class
+     */
+    private void watchFields(VirtualMachine vm, ReferenceType type) {
+        var mainThread = vm.allThreads().stream().filter(t -> t.name().equals("main")).findFirst();
+        if (mainThread.isEmpty()) return;
+        for (var field : type.fields()) {
+            var watchpointRequest = vm.eventRequestManager().createModificationWatchpointRequest(field);
+            watchpointRequest.setSuspendPolicy(EventRequest.SUSPEND_ALL);
+            watchpointRequest.addThreadFilter(mainThread.get());
+            watchpointRequest.enable();
+        }
+    }
+
     /**
      * Return the list of classes create by the user (.class files).
      *
@@ -312,6 +427,21 @@ class Executor {
         }
     }
 
+    /**
+     * A generated and compiled project, or the exception produced while compiling it.
+     */
+    static class Project {
+        final Path path;
+        final String filename;
+        final Exception failure;
+
+        Project(Path path, String filename, Exception failure) {
+            this.path = path;
+            this.filename = filename;
+            this.failure = failure;
+        }
+    }
+
     /**
      * Exception used to represent errors not catchable in the default tracing process. (ex.: empty file -> detected in
      * compilation, no main method found -> sent as error in standard error stream)
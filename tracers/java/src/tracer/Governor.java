@@ -0,0 +1,129 @@
+package tracer;
+
+import com.google.gson.JsonObject;
+
+import java.time.Duration;
+
+
+/**
+ * Limits the resources of a debugee VM: maximum heap, CPU time, wall time while running and bytes printed. Each limit
+ * of a trace may be lowered by the request, but not raised above the defaults of the environment variables
+ * TRACER_HEAP_MB (64), TRACER_CPU_MS (10000), TRACER_WALL_MS (20000) and TRACER_OUTPUT_BYTES (1048576). The CPU
+ * and wall times only count while the debugee runs, from each resume to its next event, not while it is suspended for
+ * inspections or session pauses, when the debugee spends CPU answering the inspections of the tracer.
+ */
+class Governor {
+    private static final int heapDefault = Integer.parseInt(System.getenv().getOrDefault("TRACER_HEAP_MB", "64"));
+    private static final long cpuDefault = Long.parseLong(System.getenv().getOrDefault("TRACER_CPU_MS", "10000"));
+    private static final long wallDefault = Long.parseLong(System.getenv().getOrDefault("TRACER_WALL_MS", "20000"));
+    private static final long outputDefault = Long.parseLong(
+        System.getenv().getOrDefault("TRACER_OUTPUT_BYTES", "1048576")
+    );
+
+    final int heapMegabytes;
+    final long cpuMillis;
+    final long wallMillis;
+    final long outputBytes;
+    private Process process;
+    private long runningNanos;
+    private long resumedNanos;
+    private long runningCpuNanos;
+    private long resumedCpuNanos;
+    private long printedBytes;
+
+    /**
+     * Create the governor with the default limits.
+     */
+    Governor() {
+        this(null);
+    }
+
+    /**
+     * Create the governor with the limits of a request (heap in megabytes, cpu and wall in milliseconds, output in
+     * bytes), missing limits and limits greater than the defaults get the defaults.
+     *
+     * @param limits request limits or null
+     */
+    Governor(JsonObject limits) {
+        heapMegabytes = Math.max(16, (int) limit(limits, "heap", heapDefault));
+        cpuMillis = limit(limits, "cpu", cpuDefault);
+        wallMillis = limit(limits, "wall", wallDefault);
+        outputBytes = limit(limits, "output", outputDefault);
+    }
+
+    private static long limit(JsonObject limits, String name, long defaultValue) {
+        if (limits == null || !limits.has(name)) return defaultValue;
+        return Math.max(0, Math.min(defaultValue, limits.get(name).getAsLong()));
+    }
+
+    /**
+     * Start governing a debugee VM process.
+     *
+     * @param process debugee VM process
+     */
+    void start(Process process) {
+        this.process = process;
+        runningNanos = 0;
+        runningCpuNanos = 0;
+        printedBytes = 0;
+    }
+
+    /**
+     * Mark that the debugee is about to be resumed.
+     */
+    void resumed() {
+        resumedNanos = System.nanoTime();
+        resumedCpuNanos = cpuNanos();
+    }
+
+    /**
+     * Mark that the wait for debugee events finished, adding the time and CPU time since it was resumed to its running
+     * times, and check the wall and CPU times.
+     *
+     * @throws LimitExceededException if a limit was exceeded
+     */
+    void waited() throws LimitExceededException {
+        runningNanos += System.nanoTime() - resumedNanos;
+        runningCpuNanos += cpuNanos() - resumedCpuNanos;
+        if (runningNanos >= wallMillis * 1000000)
+            throw new LimitExceededException("wall", "wall time limit exceeded: " + wallMillis + "ms");
+        if (runningCpuNanos > cpuMillis * 1000000)
+            throw new LimitExceededException("cpu", "cpu time limit exceeded: " + cpuMillis + "ms");
+    }
+
+    private long cpuNanos() {
+        return process.info().totalCpuDuration().orElse(Duration.ZERO).toNanos();
+    }
+
+    /**
+     * Milliseconds the debugee can still run.
+     */
+    long remainingWallMillis() {
+        return Math.max(0, wallMillis - runningNanos / 1000000);
+    }
+
+    /**
+     * Count bytes printed by the debugee.
+     *
+     * @param bytes printed bytes
+     * @throws LimitExceededException if the output limit was exceeded
+     */
+    void printed(long bytes) throws LimitExceededException {
+        printedBytes += bytes;
+        if (printedBytes > outputBytes)
+            throw new LimitExceededException("output", "output limit exceeded: " + outputBytes + " bytes");
+    }
+
+    /**
+     * Exception thrown when the debugee exceeds a limit, with the limit name (heap, cpu, wall or output).
+     */
+    static class LimitExceededException extends Exception {
+        private static final long serialVersionUID = 1L;
+        final String limit;
+
+        LimitExceededException(String limit, String message) {
+            super(message);
+            this.limit = limit;
+        }
+    }
+}
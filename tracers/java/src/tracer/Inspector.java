@@ -14,17 +14,36 @@ import java.util.*;
  * Inspect events and produces maps with their state data.
  */
 class Inspector {
+    private final Scope scope;
+    private final Interner interner;
     private long orderedIdCount;
     private Map<Long, String> orderedIds;
     private Map<Long, String> previousOrderedIds;
+    private int jdiCalls;
+    private List<FrameState> frameStates;
+    private int changedFrame;
+    private List<Object> checkedFrame;
 
     /**
      * Initialize the inspector and ordered id generators.
      */
     public Inspector() {
+        this(null);
+    }
+
+    /**
+     * Initialize the inspector with scope options, which restrict the frames and variables that are inspected.
+     *
+     * @param scope scope options, if null, all frames and variables are inspected
+     */
+    Inspector(JsonObject scope) {
+        this.scope = new Scope(scope);
+        this.interner = new Interner();
         orderedIdCount = 0;
         orderedIds = new HashMap<>();
         previousOrderedIds = new HashMap<>();
+        frameStates = List.of();
+        changedFrame = 0;
     }
 
     /**
@@ -35,24 +54,110 @@ class Inspector {
      * @throws IncompatibleThreadStateException
      */
     JsonObject inspect(LocatableEvent event) throws IncompatibleThreadStateException, AbsentInformationException {
+        var inspectEvent = new Events.Inspect();
+        inspectEvent.begin();
         previousOrderedIds = orderedIds;
         orderedIds = new HashMap<>();
+        jdiCalls = 0;
 
-        var eventString = event instanceof StepEvent ? "line"
-                : event instanceof MethodEntryEvent ? "call"
-                : event instanceof MethodExitEvent ? "return"
-                : event instanceof ExceptionEvent ? "exception"
-                : "line";
+        var eventString = eventName(event);
         var frames = collectFrames(event);
         var stack = createStack(frames);
         var heap = createHeap(stack, frames);
+        var heapNodes = heap.size();
+        // the caller of a returning frame resumes and an exception may unwind any frame, so their variables must be
+        // read again in the next event, any other frame below the current one only runs after the current one returns
+        changedFrame = event instanceof MethodExitEvent ? Math.max(0, frames.size() - 2)
+            : event instanceof ExceptionEvent ? 0
+            : frames.size() - 1;
+        var snapshot = new JsonObject();
+        snapshot.addProperty("event", eventString);
+        snapshot.add("stack", interner.intern(stack));
+        snapshot.add("heap", interner.intern(heap));
+        inspectEvent.event = eventString;
+        inspectEvent.frames = frames.size();
+        inspectEvent.heapNodes = heapNodes;
+        inspectEvent.jdiCalls = jdiCalls;
+        inspectEvent.commit();
+        return snapshot;
+    }
+
+    /**
+     * Build a snapshot of the event with only the locations and names of its frames. Frames have no members and the
+     * heap is empty, no variable or object is read.
+     *
+     * @param event event where the stack data will be extracted from
+     * @return the processed event data
+     * @throws IncompatibleThreadStateException
+     */
+    JsonObject locate(LocatableEvent event) throws IncompatibleThreadStateException {
+        var inspectEvent = new Events.Inspect();
+        inspectEvent.begin();
+        jdiCalls = 0;
+        var eventString = eventName(event);
+        var frames = collectFrames(event);
+        var stack = createStack(frames);
+        for (var scope : stack) scope.getAsJsonObject().add("members", new JsonArray(0));
         var snapshot = new JsonObject();
         snapshot.addProperty("event", eventString);
-        snapshot.add("stack", stack);
-        snapshot.add("heap", heap);
+        snapshot.add("stack", interner.intern(stack));
+        snapshot.add("heap", new JsonObject());
+        inspectEvent.event = eventString;
+        inspectEvent.frames = frames.size();
+        inspectEvent.jdiCalls = jdiCalls;
+        inspectEvent.commit();
         return snapshot;
     }
 
+    /**
+     * Forget the variables read from the frames, which must be called for every event that is not inspected, except
+     * line events in the current frame. The frames may have run in such events, so all of them are read again in the
+     * next inspection.
+     */
+    void skip() {
+        changedFrame = 0;
+    }
+
+    private static String eventName(LocatableEvent event) {
+        return event instanceof StepEvent ? "line"
+                : event instanceof MethodEntryEvent ? "call"
+                : event instanceof MethodExitEvent ? "return"
+                : event instanceof ExceptionEvent ? "exception"
+                : "line";
+    }
+
+    /**
+     * Check whether the variables of the current frame changed since the previous check. Primitive values and
+     * references are compared, and also the elements of arrays referenced by the variables, but not the fields of
+     * other objects. A check in a different frame than the previous check is always a change.
+     *
+     * @param event event whose current frame is checked
+     * @return whether the variables changed
+     * @throws IncompatibleThreadStateException
+     * @throws AbsentInformationException
+     */
+    boolean variablesChanged(LocatableEvent event) throws IncompatibleThreadStateException, AbsentInformationException {
+        var thread = event.thread();
+        var frame = thread.frame(0);
+        var method = frame.location().method();
+        var frameVariables = new ArrayList<LocalVariable>();
+        for (var frameVariable : frame.visibleVariables())
+            if (scope.selects(method.name(), frameVariable.name())) frameVariables.add(frameVariable);
+        var frameValues = frameVariables.isEmpty() ? Map.<LocalVariable, Value>of() : frame.getValues(frameVariables);
+        var checked = new ArrayList<Object>(frameVariables.size() + 2);
+        checked.add(thread.frameCount());
+        checked.add(method);
+        for (var frameVariable : frameVariables) {
+            var value = frameValues.get(frameVariable);
+            checked.add(frameVariable.name());
+            checked.add(value);
+            if (value instanceof ArrayReference) checked.add(((ArrayReference) value).getValues());
+        }
+        var changed = !checked.equals(checkedFrame);
+        checkedFrame = checked;
+        return changed;
+    }
+
     /**
      * Collect all frames of the event.
      *
@@ -61,6 +166,7 @@ class Inspector {
      * @throws IncompatibleThreadStateException
      */
     private ArrayList<StackFrame> collectFrames(LocatableEvent event) throws IncompatibleThreadStateException {
+        jdiCalls++;
         var frames = new ArrayList<>(event.thread().frames());
         Collections.reverse(frames);
         return frames;
@@ -84,31 +190,77 @@ class Inspector {
         return stack;
     }
 
+    /**
+     * Creates the heap and fills the stack scopes with their members. Only frames and variables selected by the scope
+     * options are read from the debugee, watch expressions are resolved and added as members of their frames.
+     * Frames below the current one that did not run since the previous event (same location and below the frame that
+     * changed) reuse the variables read in that event, values of their references are still inspected again.
+     *
+     * @param stack  stack data created from the frames
+     * @param frames frames to process
+     * @return collected heap data
+     * @throws AbsentInformationException
+     */
     private JsonObject createHeap(JsonArray stack, List<StackFrame> frames) throws AbsentInformationException {
         var heap = new JsonObject();
         var threadReference = frames.get(0).thread();
+        var firstInspectedFrame = Math.max(0, frames.size() - scope.frames);
         var variables = new ArrayList<List<LocalVariable>>(frames.size());
         var values = new ArrayList<Map<LocalVariable, Value>>(frames.size());
-        for (var frame : frames) {
-            var frameVariables = frame.visibleVariables();
-            var frameValues = frame.getValues(frameVariables);
+        var watches = new ArrayList<Map<String, Value>>(frames.size());
+        var states = new ArrayList<FrameState>(frames.size());
+        var unchanged = true;
+        for (int i = 0; i < frames.size(); i++) {
+            var frame = frames.get(i);
+            var location = frame.location();
+            var previous = i < frameStates.size() ? frameStates.get(i) : null;
+            unchanged = unchanged && i < changedFrame && i < frames.size() - 1 &&
+                    previous != null && previous.location.equals(location);
+            if (i < firstInspectedFrame) {
+                variables.add(List.of());
+                values.add(Map.of());
+                watches.add(Map.of());
+                states.add(new FrameState(location, null, null));
+                continue;
+            }
+            var method = location.method().name();
+            List<LocalVariable> frameVariables;
+            Map<LocalVariable, Value> frameValues;
+            if (unchanged && previous.values != null) {
+                frameVariables = previous.variables;
+                frameValues = previous.values;
+            } else {
+                frameVariables = new ArrayList<>();
+                for (var frameVariable : frame.visibleVariables())
+                    if (scope.selects(method, frameVariable.name())) frameVariables.add(frameVariable);
+                jdiCalls += frameVariables.isEmpty() ? 1 : 2;
+                frameValues = frameVariables.isEmpty() ? Map.of() : frame.getValues(frameVariables);
+            }
             variables.add(frameVariables);
             values.add(frameValues);
+            watches.add(resolveWatches(frame, method));
+            states.add(new FrameState(location, frameVariables, frameValues));
         }
+        frameStates = states;
         // collect all values before any evaluation
         // frames get invalid after invoking methods in objects
         for (int i = 0; i < frames.size(); i++) {
             var frameVariables = variables.get(i);
             var frameValues = values.get(i);
-            var members = new JsonArray(frameVariables.size());
+            var frameWatches = watches.get(i);
+            var members = new JsonArray(frameVariables.size() + frameWatches.size());
             for (var frameVariable : frameVariables) {
-                var name = frameVariable.name();
-                if (name.equals("args")) continue;
                 var member = new JsonObject();
-                member.addProperty("key", name);
+                member.addProperty("key", frameVariable.name());
                 member.add("value", inspectValue(heap, frameValues.get(frameVariable), threadReference));
                 members.add(member);
             }
+            for (var frameWatch : frameWatches.entrySet()) {
+                var member = new JsonObject();
+                member.addProperty("key", frameWatch.getKey());
+                member.add("value", inspectValue(heap, frameWatch.getValue(), threadReference));
+                members.add(member);
+            }
             var scope = stack.get(i).getAsJsonObject();
             scope.add("members", members);
         }
@@ -116,8 +268,42 @@ class Inspector {
     }
 
     /**
-     * Recursively inspect values of the heap.
-     * Mutates the snapshot if it is an object.
+     * Resolve the watch expressions that apply to a frame. Each expression is a variable followed by a path of field
+     * names (ex.: list.head.next). Expressions whose variable is not visible in the frame or whose path does not exist
+     * are skipped, null references in the middle of the path resolve to null.
+     *
+     * @param frame  frame where the expressions variables are read
+     * @param method frame method name
+     * @return resolved values mapped by their expressions, in the order they were requested
+     * @throws AbsentInformationException
+     */
+    private Map<String, Value> resolveWatches(StackFrame frame, String method) throws AbsentInformationException {
+        var resolved = new LinkedHashMap<String, Value>();
+        watches: for (var watch : scope.watches) {
+            if (watch.method != null && !watch.method.equals(method)) continue;
+            jdiCalls += 2;
+            var variable = frame.visibleVariableByName(watch.path.get(0));
+            if (variable == null) continue;
+            var value = frame.getValue(variable);
+            for (var fieldName : watch.path.subList(1, watch.path.size())) {
+                if (value == null) break;
+                if (!(value instanceof ObjectReference)) continue watches;
+                var reference = (ObjectReference) value;
+                var field = reference.referenceType().fieldByName(fieldName);
+                if (field == null) continue watches;
+                jdiCalls++;
+                value = reference.getValue(field);
+            }
+            resolved.put(watch.expression, value);
+        }
+        return resolved;
+    }
+
+    /**
+     * Inspect values of the heap. The object graph is traversed depth first, in the same order the members appear, with
+     * an explicit work list instead of recursion, so very deep graphs (ex.: long linked lists) do not overflow the
+     * tracer stack. Objects get their ordered ids and heap entries when first reached, before their members.
+     * Mutates the heap if the value is an object.
      *
      * @param heap            heap to be filled with value information
      * @param value           value to be processed
@@ -125,9 +311,46 @@ class Inspector {
      * @return the transformed value
      */
     private JsonElement inspectValue(JsonObject heap, Value value, ThreadReference threadReference) {
+        var pending = new ArrayDeque<Pending>();
+        var element = inspectValue(heap, value, threadReference, pending);
+        while (!pending.isEmpty()) {
+            var top = pending.peek();
+            if (top.index == top.values.size()) {
+                pending.pop();
+                continue;
+            }
+            var index = top.index++;
+            var memberValue = top.values.get(index);
+            if (top.keys != null) {
+                var member = new JsonObject();
+                member.add("key", top.keys.get(index));
+                top.members.add(member);
+                member.add("value", inspectValue(heap, memberValue, threadReference, pending));
+            } else if (index % 2 == 0) {
+                top.member = new JsonObject();
+                top.members.add(top.member);
+                top.member.add("key", inspectValue(heap, memberValue, threadReference, pending));
+            } else {
+                top.member.add("value", inspectValue(heap, memberValue, threadReference, pending));
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Inspect a single value. If the value is an object reached for the first time, its heap entry is created and its
+     * members are added to the work list.
+     *
+     * @param heap            heap to be filled with value information
+     * @param value           value to be processed
+     * @param threadReference debugee jvm thread to call functions on it
+     * @param pending         work list of objects whose members were not inspected yet
+     * @return the transformed value
+     */
+    private JsonElement inspectValue(JsonObject heap, Value value, ThreadReference threadReference, Deque<Pending> pending) {
         if (value == null) return new JsonPrimitive("null");
         if (value instanceof PrimitiveValue) return inspectPrimitive((PrimitiveValue) value);
-        if (value instanceof ObjectReference) return inspectObject(heap, (ObjectReference) value, threadReference);
+        if (value instanceof ObjectReference) return inspectObject(heap, (ObjectReference) value, threadReference, pending);
         return new JsonPrimitive("void");
     }
 
@@ -152,7 +375,7 @@ class Inspector {
 
     }
 
-    private JsonElement inspectObject(JsonObject heap, ObjectReference value, ThreadReference threadReference) {
+    private JsonElement inspectObject(JsonObject heap, ObjectReference value, ThreadReference threadReference, Deque<Pending> pending) {
         if (value instanceof StringReference) return new JsonPrimitive(((StringReference) value).value());
         Class<?> valueClass = null;
         try {
@@ -161,7 +384,10 @@ class Inspector {
                     Double.class.isAssignableFrom(valueClass) || Character.class.isAssignableFrom(valueClass) ||
                     Float.class.isAssignableFrom(valueClass) || Long.class.isAssignableFrom(valueClass) ||
                     Byte.class.isAssignableFrom(valueClass) || Short.class.isAssignableFrom(valueClass)
-            ) return inspectPrimitive((PrimitiveValue) value.getValue(value.referenceType().fieldByName("value")));
+            ) {
+                jdiCalls++;
+                return inspectPrimitive((PrimitiveValue) value.getValue(value.referenceType().fieldByName("value")));
+            }
         } catch (ClassNotFoundException e) {
             // array types always throw class not found
         }
@@ -183,8 +409,9 @@ class Inspector {
         }
         var className = value.referenceType().name();
         if (value instanceof ArrayReference)
-            return inspectArray(heap, (ArrayReference) value, orderedId, className, "list", threadReference);
+            return inspectArray(heap, (ArrayReference) value, orderedId, className, "list", pending);
         if (valueClass != null && Collection.class.isAssignableFrom(valueClass)) {
+            jdiCalls++;
             try {
                 var collectionArrayValue = value.invokeMethod(
                         threadReference,
@@ -192,41 +419,31 @@ class Inspector {
                         List.of(),
                         ObjectReference.INVOKE_SINGLE_THREADED
                 );
-                return inspectArray(heap, (ArrayReference) collectionArrayValue, orderedId, className, List.class.isAssignableFrom(valueClass) ? "list" : "set", threadReference);
+                return inspectArray(heap, (ArrayReference) collectionArrayValue, orderedId, className, List.class.isAssignableFrom(valueClass) ? "list" : "set", pending);
             } catch (InvalidTypeException | ClassNotLoadedException | IncompatibleThreadStateException | InvocationException e) {
                 return new JsonPrimitive("unknown");
             }
         }
         if (valueClass != null && Map.class.isAssignableFrom(valueClass))
-            return inspectMap(heap, value, orderedId, className, "map", threadReference);
+            return inspectMap(heap, value, orderedId, className, "map", threadReference, pending);
         var referenceData = value.referenceType().toString().split(" ");
         if (referenceData[0].equals("class") && !referenceData[1].contains("."))
-            return inspectUserObject(heap, value, orderedId, className, "map", threadReference);
+            return inspectUserObject(heap, value, orderedId, className, "map", pending);
         return new JsonPrimitive("class " + className);
     }
 
-    private JsonElement inspectArray(JsonObject heap, ArrayReference value, String id, String type, String category, ThreadReference threadReference) {
-        var obj = new JsonObject();
-        heap.add(id, obj);
-        obj.addProperty("id", id);
-        obj.addProperty("type", type);
-        obj.addProperty("category", category);
-        var members = new JsonArray(value.length());
+    private JsonElement inspectArray(JsonObject heap, ArrayReference value, String id, String type, String category, Deque<Pending> pending) {
+        jdiCalls++;
         var values = value.getValues();
-        for (var i = 0; i < values.size(); i++) {
-            var member = new JsonObject();
-            member.addProperty("key", i);
-            member.add("value", inspectValue(heap, values.get(i), threadReference));
-            members.add(member);
-        }
-        obj.add("members", members);
-        var idValue = new JsonArray(1);
-        idValue.add(id);
-        return idValue;
+        var keys = new ArrayList<JsonElement>(values.size());
+        for (var i = 0; i < values.size(); i++) keys.add(new JsonPrimitive(i));
+        return createObject(heap, id, type, category, keys, values, pending);
     }
 
-    private JsonElement inspectMap(JsonObject heap, ObjectReference value, String id, String type, String category, ThreadReference threadReference) {
-        ArrayReference entryArrayValue = null;
+    private JsonElement inspectMap(JsonObject heap, ObjectReference value, String id, String type, String category, ThreadReference threadReference, Deque<Pending> pending) {
+        // entries are resolved before the map is added to the heap, invocations may fail halfway
+        var entriesKeysValues = new ArrayList<Value>();
+        jdiCalls += 3;
         try {
             var entrySetValue = (ObjectReference) value.invokeMethod(
                     threadReference,
@@ -234,71 +451,163 @@ class Inspector {
                     List.of(),
                     ObjectReference.INVOKE_SINGLE_THREADED
             );
-            entryArrayValue = (ArrayReference) entrySetValue.invokeMethod(
+            var entryArrayValue = (ArrayReference) entrySetValue.invokeMethod(
                     threadReference,
                     entrySetValue.referenceType().methodsByName("toArray", "()[Ljava/lang/Object;").get(0),
                     List.of(),
                     ObjectReference.INVOKE_SINGLE_THREADED
             );
-        } catch (InvalidTypeException | ClassNotLoadedException | IncompatibleThreadStateException | InvocationException e) {
-            return new JsonPrimitive("unknown");
-        }
-        var obj = new JsonObject();
-        heap.add(id, obj);
-        obj.addProperty("id", id);
-        obj.addProperty("type", type);
-        obj.addProperty("category", category);
-        var members = new JsonArray(entryArrayValue.length());
-        for (var entryValue : entryArrayValue.getValues()) {
-            var objEntryValue = (ObjectReference) entryValue;
-            Value entryKeyValue = null;
-            Value entryValueValue = null;
-            try {
-                entryKeyValue = objEntryValue.invokeMethod(
+            for (var entryValue : entryArrayValue.getValues()) {
+                var objEntryValue = (ObjectReference) entryValue;
+                jdiCalls += 2;
+                entriesKeysValues.add(objEntryValue.invokeMethod(
                         threadReference,
                         objEntryValue.referenceType().methodsByName("getKey").get(0),
                         List.of(),
                         ObjectReference.INVOKE_SINGLE_THREADED
-                );
-                entryValueValue = objEntryValue.invokeMethod(
+                ));
+                entriesKeysValues.add(objEntryValue.invokeMethod(
                         threadReference,
                         objEntryValue.referenceType().methodsByName("getValue").get(0),
                         List.of(),
                         ObjectReference.INVOKE_SINGLE_THREADED
-                );
-            } catch (InvalidTypeException | ClassNotLoadedException | IncompatibleThreadStateException | InvocationException e) {
-                return new JsonPrimitive("unknown");
+                ));
             }
-            var member = new JsonObject();
-            member.add("key", inspectValue(heap, entryKeyValue, threadReference));
-            member.add("value", inspectValue(heap, entryValueValue, threadReference));
-            members.add(member);
+        } catch (InvalidTypeException | ClassNotLoadedException | IncompatibleThreadStateException | InvocationException e) {
+            return new JsonPrimitive("unknown");
         }
-        obj.add("members", members);
-        var idValue = new JsonArray(1);
-        idValue.add(id);
-        return idValue;
+        return createObject(heap, id, type, category, null, entriesKeysValues, pending);
     }
 
-    private JsonElement inspectUserObject(JsonObject heap, ObjectReference value, String id, String type, String category, ThreadReference threadReference) {
+    private JsonElement inspectUserObject(JsonObject heap, ObjectReference value, String id, String type, String category, Deque<Pending> pending) {
+        var fields = value.referenceType().allFields();
+        jdiCalls++;
+        var fieldsValues = value.getValues(fields);
+        var keys = new ArrayList<JsonElement>(fields.size());
+        var values = new ArrayList<Value>(fields.size());
+        for (var field : fields) {
+            keys.add(new JsonPrimitive(field.name()));
+            values.add(fieldsValues.get(field));
+        }
+        return createObject(heap, id, type, category, keys, values, pending);
+    }
+
+    /**
+     * Add an object to the heap and its members to the work list.
+     *
+     * @param heap     heap to be filled with the object
+     * @param id       object ordered id
+     * @param type     object type name
+     * @param category object category
+     * @param keys     members keys, null if keys are values to be inspected
+     * @param values   members values, alternating keys and values if keys is null
+     * @param pending  work list of objects whose members were not inspected yet
+     * @return the reference to the object
+     */
+    private JsonElement createObject(JsonObject heap, String id, String type, String category, List<JsonElement> keys, List<Value> values, Deque<Pending> pending) {
         var obj = new JsonObject();
         heap.add(id, obj);
         obj.addProperty("id", id);
         obj.addProperty("type", type);
         obj.addProperty("category", category);
-        var fields = value.referenceType().allFields();
-        var fieldsValues = value.getValues(fields);
-        var members = new JsonArray(fields.size());
-        for (var field : fields) {
-            var member = new JsonObject();
-            member.addProperty("key", field.name());
-            member.add("value", inspectValue(heap, fieldsValues.get(field), threadReference));
-            members.add(member);
-        }
+        var members = new JsonArray(keys != null ? values.size() : values.size() / 2);
         obj.add("members", members);
+        pending.push(new Pending(members, keys, values));
         var idValue = new JsonArray(1);
         idValue.add(id);
         return idValue;
     }
-}
 
+    /**
+     * Object in the work list, with the members that are still not inspected.
+     */
+    private static class Pending {
+        final JsonArray members;
+        final List<JsonElement> keys;
+        final List<Value> values;
+        int index;
+        JsonObject member;
+
+        Pending(JsonArray members, List<JsonElement> keys, List<Value> values) {
+            this.members = members;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Scope options that select which frames and variables are inspected. Variables are selected by entries in the
+     * format "variable" or "method:variable", and "*" selects all variables. Variables named args are never selected.
+     * Options received in the request:
+     * - frames: number of top frames inspected, the other frames have no members
+     * - include: if present, only the listed variables are inspected
+     * - exclude: listed variables are not inspected, even if included
+     * - watch: expressions in the format "variable.field.field" or "method:variable.field.field"
+     */
+    static class Scope {
+        final int frames;
+        final Set<String> include;
+        final Set<String> exclude;
+        final List<Watch> watches;
+
+        Scope(JsonObject options) {
+            var frames = options != null ? options.get("frames") : null;
+            var include = options != null ? options.get("include") : null;
+            var exclude = options != null ? options.get("exclude") : null;
+            var watch = options != null ? options.get("watch") : null;
+            this.frames = frames != null ? Math.max(0, frames.getAsInt()) : Integer.MAX_VALUE;
+            this.include = include != null ? toSet(include.getAsJsonArray()) : null;
+            this.exclude = exclude != null ? toSet(exclude.getAsJsonArray()) : Set.of();
+            this.watches = new ArrayList<>();
+            if (watch != null) for (var expression : watch.getAsJsonArray()) watches.add(new Watch(expression.getAsString()));
+        }
+
+        private static Set<String> toSet(JsonArray array) {
+            var set = new HashSet<String>();
+            for (var element : array) set.add(element.getAsString());
+            return set;
+        }
+
+        boolean selects(String method, String variable) {
+            if (variable.equals("args")) return false;
+            if (matches(exclude, method, variable)) return false;
+            return include == null || matches(include, method, variable);
+        }
+
+        private static boolean matches(Set<String> entries, String method, String variable) {
+            return entries.contains(variable) || entries.contains(method + ":" + variable) ||
+                    entries.contains("*") || entries.contains(method + ":*");
+        }
+    }
+
+    /**
+     * Parsed watch expression.
+     */
+    static class Watch {
+        final String expression;
+        final String method;
+        final List<String> path;
+
+        Watch(String expression) {
+            var separator = expression.indexOf(':');
+            this.expression = expression;
+            this.method = separator >= 0 ? expression.substring(0, separator) : null;
+            this.path = List.of(expression.substring(separator + 1).split("\\."));
+        }
+    }
+
+    /**
+     * Location and variables of a frame read in an event, reused while the frame does not run.
+     */
+    private static class FrameState {
+        final Location location;
+        final List<LocalVariable> variables;
+        final Map<LocalVariable, Value> values;
+
+        FrameState(Location location, List<LocalVariable> variables, Map<LocalVariable, Value> values) {
+            this.location = location;
+            this.variables = variables;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package tracer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Shares equal json trees among the snapshots of a trace. Trees are interned bottom up: children are replaced by their
+ * canonical instances, so a tree is equal to a canonical one if it has the same keys and the same child instances,
+ * which is checked without walking the whole tree. Unchanged heap objects, members, frames and strings (field names,
+ * class names and string values) are then kept once for the whole trace instead of once per step. The serialized
+ * response does not change. Interned trees are shared and must not be modified.
+ */
+class Interner {
+    private final Map<Object, JsonElement> primitives = new HashMap<>();
+    private final Map<Key, JsonElement> canonical = new HashMap<>();
+
+    /**
+     * Intern a tree, replacing its children by their canonical instances.
+     *
+     * @param element tree to intern, it is modified
+     * @return the canonical instance of the tree
+     */
+    JsonElement intern(JsonElement element) {
+        if (element == null || element.isJsonNull()) return JsonNull.INSTANCE;
+        if (element.isJsonPrimitive()) {
+            var primitive = element.getAsJsonPrimitive();
+            // keyed by the boxed value, unlike primitives, boxed values of different classes are never equal (1 and 1.0
+            // are equal primitives but are serialized differently)
+            var value = primitive.isNumber() ? primitive.getAsNumber()
+                : primitive.isBoolean() ? (Object) primitive.getAsBoolean()
+                : primitive.getAsString();
+            var interned = primitives.putIfAbsent(value, element);
+            return interned != null ? interned : element;
+        }
+        Object[] parts;
+        if (element.isJsonArray()) {
+            var array = element.getAsJsonArray();
+            parts = new Object[array.size()];
+            for (var i = 0; i < array.size(); i++) {
+                var child = intern(array.get(i));
+                array.set(i, child);
+                parts[i] = child;
+            }
+        } else {
+            var object = element.getAsJsonObject();
+            var entries = object.entrySet();
+            parts = new Object[entries.size() * 2];
+            var i = 0;
+            for (var entry : entries) {
+                var child = intern(entry.getValue());
+                entry.setValue(child);
+                parts[i++] = entry.getKey();
+                parts[i++] = child;
+            }
+        }
+        var interned = canonical.putIfAbsent(new Key(element.getClass(), parts), element);
+        return interned != null ? interned : element;
+    }
+
+    /**
+     * Interned tree key, json children are compared by identity and other parts by equality.
+     */
+    private static class Key {
+        final Class<?> type;
+        final Object[] parts;
+        final int hash;
+
+        Key(Class<?> type, Object[] parts) {
+            this.type = type;
+            this.parts = parts;
+            var hash = type.hashCode();
+            for (var part : parts)
+                hash = 31 * hash + (part instanceof JsonElement ? System.identityHashCode(part) : part.hashCode());
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            var key = (Key) other;
+            if (type != key.type || hash != key.hash || parts.length != key.parts.length) return false;
+            for (var i = 0; i < parts.length; i++) {
+                var part = parts[i];
+                var otherPart = key.parts[i];
+                if (part instanceof JsonElement ? part != otherPart : !part.equals(otherPart)) return false;
+            }
+            return true;
+        }
+    }
+}
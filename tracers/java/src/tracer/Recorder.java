@@ -0,0 +1,98 @@
+package tracer;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Starts flight recordings of the tracer, configured by environment variables:
+ * - TRACER_JFR=continuous: a single recording kept in a ring buffer (last 10 minutes, at most 64MB), which can be
+ * dumped with jcmd (JFR.dump) and is dumped to TRACER_JFR_DIR when the tracer exits.
+ * - TRACER_JFR=request: a recording for each request, dumped to TRACER_JFR_DIR when the request finishes. Recordings
+ * are global to the JVM, so the recording of a request also contains the events of requests running at the same time
+ * (the events of a request can not be selected by thread, batches and sessions trace in other threads).
+ * - unset: the tracer does not start recordings.
+ * TRACER_JFR_DIR defaults to the system temporary directory.
+ */
+public class Recorder {
+    private static final String mode = System.getenv().getOrDefault("TRACER_JFR", "");
+    private static final Path directory = Paths.get(
+        System.getenv().getOrDefault("TRACER_JFR_DIR", System.getProperty("java.io.tmpdir"))
+    );
+    private static final AtomicLong requests = new AtomicLong();
+
+    static {
+        if (mode.equals("continuous")) {
+            try {
+                var recording = create("tracer-continuous");
+                recording.setMaxAge(Duration.ofMinutes(10));
+                recording.setMaxSize(64L * 1024 * 1024);
+                recording.setDumpOnExit(true);
+                recording.setDestination(directory.resolve("tracer-continuous.jfr"));
+                recording.start();
+            } catch (IOException | ParseException e) {
+                System.err.println("flight recording not started: " + e);
+            }
+        }
+    }
+
+    private Recorder() {
+    }
+
+    /**
+     * Start the recording of a request if recordings per request are enabled.
+     *
+     * @return the recording or null
+     */
+    public static Recording start() {
+        if (!mode.equals("request")) return null;
+        try {
+            var recording = create("tracer-request");
+            recording.start();
+            return recording;
+        } catch (IOException | ParseException e) {
+            System.err.println("flight recording not started: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stop and dump the recording of a request.
+     *
+     * @param recording the recording returned by start(), may be null
+     */
+    public static void stop(Recording recording) {
+        if (recording == null) return;
+        try {
+            recording.stop();
+            var name = "trace-" + System.currentTimeMillis() + "-" + requests.incrementAndGet() + ".jfr";
+            recording.dump(directory.resolve(name));
+        } catch (IOException e) {
+            System.err.println("flight recording not dumped: " + e);
+        } finally {
+            recording.close();
+        }
+    }
+
+    /**
+     * Create a recording with the default JDK settings and all tracer events enabled.
+     */
+    private static Recording create(String name) throws IOException, ParseException {
+        var recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName(name);
+        recording.setToDisk(true);
+        recording.enable(Events.Compile.class);
+        recording.enable(Events.Launch.class);
+        recording.enable(Events.EventWait.class);
+        recording.enable(Events.Inspect.class);
+        recording.enable(Events.Serialize.class);
+        return recording;
+    }
+}
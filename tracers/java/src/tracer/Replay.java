@@ -0,0 +1,113 @@
+package tracer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ * Produces full snapshots of selected steps of a trace, usually a lazy one, by running the program again up to the last
+ * selected step and inspecting only the selected steps. The program must be deterministic for the same input, a
+ * program that depends on time or random values may not reach the same states. Object ids are numbered among the
+ * snapshots produced together, so the snapshots are cached by the whole set of requested steps: requesting the same
+ * steps again does not run the program again, any other set of steps is replayed whole. The most recently used sets
+ * are kept while they hold at most MAX_CACHED_SNAPSHOTS snapshots.
+ */
+public class Replay {
+    static final int MAX_SNAPSHOTS = 50;
+    static final int MAX_CACHED_SNAPSHOTS = 128;
+    private static final Map<String, JsonObject> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static int cachedSnapshots = 0;
+
+    private Replay() {
+    }
+
+    /**
+     * Produce the snapshots of the request, which contains the program source, input, optional scope options and
+     * coalesce policy of the original trace, its steps and the list of step indices ("snapshots"). A trace of n steps
+     * has at most n - 1 steps, the first event is not a step, so indices must be smaller than n - 1.
+     *
+     * @param request request
+     * @return the steps mapped by their indices, indices after the end of the program are missing
+     * @throws IllegalArgumentException if there are too many step indices or indices out of the steps of the trace
+     */
+    public static JsonObject run(final JsonObject request) {
+        final var indices = new TreeSet<Integer>();
+        for (final var index : request.get("snapshots").getAsJsonArray()) indices.add(index.getAsInt());
+        if (indices.size() > MAX_SNAPSHOTS)
+            throw new IllegalArgumentException("too many snapshots, maximum allowed: " + MAX_SNAPSHOTS);
+        if (!indices.isEmpty() && indices.first() < 0) throw new IllegalArgumentException("negative snapshot index");
+        final var maxIndex = request.get("steps").getAsInt() - 2;
+        if (!indices.isEmpty() && indices.last() > maxIndex)
+            throw new IllegalArgumentException("snapshot index out of the steps, maximum index: " + maxIndex);
+
+        final var key = key(request) + indices;
+        final var response = new JsonObject();
+        synchronized (cache) {
+            final var cached = cache.get(key);
+            if (cached != null) {
+                response.add("steps", cached);
+                return response;
+            }
+        }
+
+        final var responseSteps = new JsonObject();
+        if (!indices.isEmpty()) {
+            final var replayRequest = new JsonObject();
+            replayRequest.add("source", request.get("source"));
+            replayRequest.add("input", request.get("input"));
+            // the first event is not a step
+            replayRequest.addProperty("steps", indices.last() + 2);
+            if (request.has("scope")) replayRequest.add("scope", request.get("scope"));
+            if (request.has("coalesce")) replayRequest.add("coalesce", request.get("coalesce"));
+            if (request.has("limits")) replayRequest.add("limits", request.get("limits"));
+            final var snapshots = new JsonArray(indices.size());
+            indices.forEach(snapshots::add);
+            replayRequest.add("snapshots", snapshots);
+            for (final var element : new Tracer(replayRequest).run().getAsJsonArray("steps")) {
+                final var step = element.getAsJsonObject();
+                if (!step.has("index")) continue;
+                responseSteps.add(step.remove("index").getAsString(), step);
+            }
+        }
+        synchronized (cache) {
+            final var previous = cache.put(key, responseSteps);
+            cachedSnapshots += responseSteps.size() - (previous != null ? previous.size() : 0);
+            // the least recently used sets are evicted first, the new set is kept even if it is larger than the limit
+            final var iterator = cache.values().iterator();
+            while (cachedSnapshots > MAX_CACHED_SNAPSHOTS && cache.size() > 1) {
+                cachedSnapshots -= iterator.next().size();
+                iterator.remove();
+            }
+        }
+        response.add("steps", responseSteps);
+        return response;
+    }
+
+    /**
+     * Cache key prefix of the steps of a program, from the request properties that change the snapshots.
+     */
+    private static String key(final JsonObject request) {
+        final var program = new JsonObject();
+        program.add("source", request.get("source"));
+        program.add("input", request.get("input"));
+        program.add("scope", request.get("scope"));
+        program.add("coalesce", request.get("coalesce"));
+        try {
+            final var digest = MessageDigest
+                .getInstance("SHA-256")
+                .digest(program.toString().getBytes(StandardCharsets.UTF_8));
+            final var key = new StringBuilder();
+            for (final var b : digest) key.append(String.format("%02x", b));
+            return key.append(':').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package tracer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Schedules traces under a limited number of debugee VMs. Waiting traces are served with weighted fair queueing among
+ * priority classes, earliest deadline first inside each class, and no tenant can run more than its quota of VMs at the
+ * same time, traces without tenant share a single anonymous quota. A trace that fits in the free VMs and its quota
+ * starts at once, even if other traces wait for VMs it does not need. Traces that would not start before their
+ * deadlines or do not fit in the queue are rejected with an estimate of when to retry, a full queue gives place to new
+ * traces of greater weight by rejecting waiting traces of smaller weight, and no tenant can have more than its share
+ * of the queue waiting. Tenants and priorities are not authenticated here, they are trusted as given by the caller.
+ */
+public class Scheduler {
+    static final Map<String, Integer> weights = Map.of("user", 4, "anonymous", 1);
+
+    private final int capacity;
+    private final int tenantQuota;
+    private final int anonymousQuota;
+    private final int maxQueued;
+    private final int tenantMaxQueued;
+    private final ReentrantLock lock;
+    private final List<Waiter> waiting;
+    private final Map<String, Double> passes;
+    private final Map<String, Integer> runningByTenant;
+    private int running;
+    private double virtualTime;
+    private double averageSeconds;
+
+    /**
+     * Create the scheduler.
+     *
+     * @param capacity        maximum number of debugee VMs running at the same time
+     * @param tenantQuota     maximum number of debugee VMs running at the same time for a single tenant
+     * @param anonymousQuota  maximum number of debugee VMs running at the same time for all traces without tenant
+     * @param maxQueued       maximum number of waiting traces
+     * @param tenantMaxQueued maximum number of waiting traces of a single tenant
+     */
+    public Scheduler(int capacity, int tenantQuota, int anonymousQuota, int maxQueued, int tenantMaxQueued) {
+        this.capacity = Math.max(1, capacity);
+        this.tenantQuota = Math.max(1, tenantQuota);
+        this.anonymousQuota = Math.max(1, anonymousQuota);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.tenantMaxQueued = Math.max(0, tenantMaxQueued);
+        lock = new ReentrantLock();
+        waiting = new ArrayList<>();
+        passes = new HashMap<>();
+        runningByTenant = new HashMap<>();
+        running = 0;
+        virtualTime = 0;
+        averageSeconds = 5;
+    }
+
+    /**
+     * Create the scheduler configured by the environment variables TRACER_CAPACITY (defaults to the number of
+     * processors), TRACER_TENANT_QUOTA (defaults to 2), TRACER_ANONYMOUS_QUOTA (defaults to half the capacity),
+     * TRACER_QUEUE (defaults to 32) and TRACER_TENANT_QUEUE (defaults to a quarter of the queue).
+     *
+     * @return the scheduler
+     */
+    public static Scheduler fromEnvironment() {
+        var environment = System.getenv();
+        var capacity = Integer.parseInt(
+            environment.getOrDefault("TRACER_CAPACITY", Integer.toString(Runtime.getRuntime().availableProcessors()))
+        );
+        var maxQueued = Integer.parseInt(environment.getOrDefault("TRACER_QUEUE", "32"));
+        return new Scheduler(
+            capacity,
+            Integer.parseInt(environment.getOrDefault("TRACER_TENANT_QUOTA", "2")),
+            Integer.parseInt(environment.getOrDefault("TRACER_ANONYMOUS_QUOTA", Integer.toString(capacity / 2))),
+            maxQueued,
+            Integer.parseInt(environment.getOrDefault("TRACER_TENANT_QUEUE", Integer.toString(maxQueued / 4)))
+        );
+    }
+
+    /**
+     * Wait until the trace can run.
+     *
+     * @param tenant   tenant of the trace, traces without tenant share the anonymous quota
+     * @param priority priority class (user or anonymous), unknown classes are anonymous
+     * @param deadline time in milliseconds (System.currentTimeMillis()) until which the trace must start
+     * @param permits  number of debugee VMs the trace needs, limited to the capacity and the quota of its tenant
+     * @return the ticket, with the granted permits, that must be closed when the trace finishes
+     * @throws RejectedException    if the trace cannot start before its deadline or the queue (or the share of its
+     *                              tenant) is full
+     * @throws InterruptedException
+     */
+    public Ticket acquire(String tenant, String priority, long deadline, int permits)
+        throws RejectedException,
+        InterruptedException {
+        // tenants are prefixed so no tenant can be mistaken for the anonymous one
+        var quota = tenant != null ? tenantQuota : anonymousQuota;
+        var waiter = new Waiter(
+            tenant != null ? "tenant:" + tenant : "anonymous",
+            quota,
+            weights.containsKey(priority) ? priority : "anonymous",
+            deadline,
+            Math.min(Math.max(1, permits), Math.min(capacity, quota)),
+            lock.newCondition()
+        );
+        lock.lock();
+        try {
+            // waiters are dispatched as soon as they fit, so the waiting ones cannot use the VMs this trace fits in
+            if (fits(waiter)) {
+                start(waiter);
+                return new Ticket(waiter);
+            }
+            var expectedWait = expectedWait(waiter.priority);
+            // the deadline is checked first, so no waiter is evicted to give place to a trace that is then rejected
+            if (System.currentTimeMillis() + expectedWait * 1000 > deadline)
+                throw new RejectedException("trace would not start before its deadline", expectedWait);
+            if (
+                !waiter.tenant.equals("anonymous") &&
+                    waiting.stream().filter(w -> w.tenant.equals(waiter.tenant)).count() >= tenantMaxQueued
+            ) throw new RejectedException("too many traces of the tenant waiting", expectedWait);
+            if (waiting.size() >= maxQueued && !evict(waiter))
+                throw new RejectedException("too many traces waiting", expectedWait);
+            waiting.add(waiter);
+            while (!waiter.granted) {
+                if (waiter.evicted)
+                    throw new RejectedException("trace replaced by higher priority traces", expectedWait(waiter.priority));
+                var remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    waiting.remove(waiter);
+                    dispatch();
+                    throw new RejectedException("trace did not start before its deadline", expectedWait(waiter.priority));
+                }
+                waiter.condition.await(remaining, TimeUnit.MILLISECONDS);
+            }
+            return new Ticket(waiter);
+        } catch (InterruptedException e) {
+            waiting.remove(waiter);
+            if (waiter.granted) release(waiter);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start waiting traces while there is capacity. The next trace is the earliest deadline waiter, among waiters
+     * whose tenants are under their quotas, of the priority class with the smallest pass. A class pass advances by
+     * the inverse of its weight every time it starts a trace.
+     */
+    private void dispatch() {
+        while (true) {
+            Waiter next = null;
+            var nextPass = Double.MAX_VALUE;
+            for (var waiter : waiting) {
+                if (!fits(waiter)) continue;
+                var pass = pass(waiter);
+                if (pass < nextPass || pass == nextPass && waiter.deadline < next.deadline) {
+                    next = waiter;
+                    nextPass = pass;
+                }
+            }
+            if (next == null) return;
+            waiting.remove(next);
+            start(next);
+            next.condition.signal();
+        }
+    }
+
+    /**
+     * Whether the waiter fits in the free VMs and the quota of its tenant.
+     */
+    private boolean fits(Waiter waiter) {
+        return running + waiter.permits <= capacity &&
+            runningByTenant.getOrDefault(waiter.tenant, 0) + waiter.permits <= waiter.quota;
+    }
+
+    private double pass(Waiter waiter) {
+        return Math.max(passes.getOrDefault(waiter.priority, 0.0), virtualTime);
+    }
+
+    private void start(Waiter waiter) {
+        var pass = pass(waiter);
+        virtualTime = pass;
+        passes.put(waiter.priority, pass + 1.0 / weights.get(waiter.priority));
+        running += waiter.permits;
+        runningByTenant.merge(waiter.tenant, waiter.permits, Integer::sum);
+        waiter.granted = true;
+        waiter.start = System.nanoTime();
+    }
+
+    /**
+     * Remove from the queue the waiter with the smallest weight and latest deadline, if its weight is smaller than the
+     * weight of the new waiter.
+     *
+     * @param waiter new waiter
+     * @return whether a waiter was evicted
+     */
+    private boolean evict(Waiter waiter) {
+        Waiter victim = null;
+        for (var candidate : waiting) {
+            if (weights.get(candidate.priority) >= weights.get(waiter.priority)) continue;
+            if (
+                victim == null ||
+                    weights.get(candidate.priority) < weights.get(victim.priority) ||
+                    weights.get(candidate.priority).equals(weights.get(victim.priority)) && candidate.deadline > victim.deadline
+            ) victim = candidate;
+        }
+        if (victim == null) return false;
+        waiting.remove(victim);
+        victim.evicted = true;
+        victim.condition.signal();
+        return true;
+    }
+
+    private void release(Waiter waiter) {
+        running -= waiter.permits;
+        runningByTenant.computeIfPresent(waiter.tenant, (t, n) -> n > waiter.permits ? n - waiter.permits : null);
+        var seconds = (System.nanoTime() - waiter.start) / 1e9;
+        averageSeconds = averageSeconds * 0.9 + seconds * 0.1;
+        dispatch();
+    }
+
+    /**
+     * Estimated seconds until a new trace of the priority class starts, considering the waiting traces of classes with
+     * the same or greater weights.
+     */
+    private long expectedWait(String priority) {
+        if (running < capacity && waiting.isEmpty()) return 0;
+        var ahead = waiting.stream().filter(w -> weights.get(w.priority) >= weights.get(priority)).count();
+        return (long) Math.ceil(averageSeconds * (ahead + 1) / capacity);
+    }
+
+    /**
+     * Permission to run a trace with a number of debugee VMs, must be closed when the trace finishes. A trace that
+     * outlives the request that acquired its ticket (a session) retains the ticket, which is then released only when
+     * it is closed once more.
+     */
+    public class Ticket implements AutoCloseable {
+        public final int permits;
+        private final Waiter waiter;
+        private int holders;
+
+        private Ticket(Waiter waiter) {
+            this.permits = waiter.permits;
+            this.waiter = waiter;
+            this.holders = 1;
+        }
+
+        /**
+         * Keep the permits until a further close.
+         */
+        public void retain() {
+            lock.lock();
+            try {
+                if (holders > 0) holders++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (holders == 0 || --holders > 0) return;
+                release(waiter);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Exception used to reject a trace, with the estimated seconds after which the trace should be retried.
+     */
+    public static class RejectedException extends Exception {
+        private static final long serialVersionUID = 1L;
+        public final long retryAfter;
+
+        RejectedException(String message, long retryAfter) {
+            super(message);
+            this.retryAfter = Math.max(1, retryAfter);
+        }
+    }
+
+    private static class Waiter {
+        final String tenant;
+        final int quota;
+        final String priority;
+        final long deadline;
+        final int permits;
+        final Condition condition;
+        boolean granted;
+        boolean evicted;
+        long start;
+
+        Waiter(String tenant, int quota, String priority, long deadline, int permits, Condition condition) {
+            this.tenant = tenant;
+            this.quota = quota;
+            this.priority = priority;
+            this.deadline = deadline;
+            this.permits = permits;
+            this.condition = condition;
+        }
+    }
+}
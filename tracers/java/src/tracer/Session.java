@@ -0,0 +1,136 @@
+package tracer;
+
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A resumable tracing session. The session traces its program in its own thread and pauses every time a page of steps
+ * is completed, keeping the debugee VM suspended until the next page is requested. Idle sessions stop themselves after
+ * IDLE_TTL_SECONDS, releasing their VMs. A session keeps the scheduler ticket of the request that started it until it
+ * stops, so its VM counts against the scheduler capacity while it is alive. Sessions live in the JVM that started
+ * them, so they only work when every request reaches the same instance (the emulator or a self-hosted single
+ * instance) and are disabled unless the environment variable TRACER_SESSIONS is true.
+ */
+public class Session {
+    static final int MAX_SESSIONS = 8;
+    static final long IDLE_TTL_SECONDS = 30;
+    private static final boolean enabled = System.getenv().getOrDefault("TRACER_SESSIONS", "false").equals("true");
+    private static final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final String id;
+    private final Tracer tracer;
+    private final Scheduler.Ticket ticket;
+    private final BlockingQueue<JsonObject> pages;
+    private final BlockingQueue<Integer> budgets;
+
+    private Session(final JsonObject request, final Scheduler.Ticket ticket) {
+        id = UUID.randomUUID().toString();
+        tracer = new Tracer(request, null, this);
+        this.ticket = ticket;
+        pages = new LinkedBlockingQueue<>();
+        budgets = new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Start a new session with the request, which contains the program source, input and steps of the first page.
+     *
+     * @param request request
+     * @param ticket  scheduler ticket of the request, retained until the session stops, or null
+     * @return the first page
+     * @throws IllegalArgumentException if sessions are disabled
+     * @throws UnavailableException     if the maximum number of live sessions was reached
+     * @throws InterruptedException
+     */
+    public static JsonObject start(final JsonObject request, final Scheduler.Ticket ticket)
+        throws UnavailableException,
+        InterruptedException {
+        if (!enabled)
+            throw new IllegalArgumentException(
+                "sessions are disabled, they require a single instance (TRACER_SESSIONS)"
+            );
+        final var session = new Session(request, ticket);
+        synchronized (sessions) {
+            if (sessions.size() >= MAX_SESSIONS)
+                throw new UnavailableException("too many sessions, maximum allowed: " + MAX_SESSIONS);
+            sessions.put(session.id, session);
+        }
+        if (ticket != null) ticket.retain();
+        final var thread = new Thread(session::trace, "session-" + session.id);
+        thread.setDaemon(true);
+        thread.start();
+        return session.pages.take();
+    }
+
+    /**
+     * Continue tracing the next steps of a live session.
+     *
+     * @param id    session id
+     * @param steps number of steps of the next page
+     * @return the next page
+     * @throws IllegalArgumentException if the session does not exist or expired
+     * @throws InterruptedException
+     */
+    public static JsonObject resume(final String id, final int steps) throws InterruptedException {
+        final var session = sessions.get(id);
+        if (session == null) throw new IllegalArgumentException("session not found or expired: " + id);
+        synchronized (session) {
+            session.budgets.put(steps);
+            return session.pages.take();
+        }
+    }
+
+    /**
+     * Run the tracer in the session thread and publish the last page when the program (or the session) finishes.
+     */
+    private void trace() {
+        try {
+            pages.add(page(tracer.run(), true));
+        } finally {
+            sessions.remove(id);
+            if (ticket != null) ticket.close();
+        }
+    }
+
+    /**
+     * Called by the tracer when the page steps are exhausted. Publishes the page and blocks the tracer, with the
+     * debugee VM suspended, until the next page is requested.
+     *
+     * @param response the tracer response with the steps of the page
+     * @return the number of steps of the next page
+     * @throws Tracer.TracerStopException if the session was idle for more than IDLE_TTL_SECONDS
+     * @throws InterruptedException
+     */
+    int next(final JsonObject response) throws Tracer.TracerStopException, InterruptedException {
+        pages.add(page(response, false));
+        final var steps = budgets.poll(IDLE_TTL_SECONDS, TimeUnit.SECONDS);
+        if (steps == null) {
+            sessions.remove(id);
+            throw new Tracer.TracerStopException("session expired");
+        }
+        return steps;
+    }
+
+    private JsonObject page(final JsonObject response, final boolean finished) {
+        response.addProperty("session", id);
+        response.addProperty("finished", finished);
+        return response;
+    }
+
+    /**
+     * Exception thrown when a session cannot start because the maximum number of live sessions was reached.
+     */
+    public static class UnavailableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnavailableException(String message) {
+            super(message);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.sun.jdi.AbsentInformationException;
 import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.Location;
 import com.sun.jdi.event.*;
 
 import java.io.PrintWriter;
@@ -11,6 +12,7 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 
@@ -18,27 +20,77 @@ import java.util.stream.Collectors;
  * Traces a java requests.
  */
 public class Tracer {
+    private static final int MAX_UNCHANGED_EVENTS = 100000;
+
     private final String source;
     private final String input;
-    private final int steps;
+    private final Executor.Project project;
+    private final Session session;
+    private final Coalesce coalesce;
+    private final boolean lazy;
+    private final TreeSet<Integer> snapshotSteps;
     private final Inspector inspector;
+    private final Governor governor;
     private final List<String> printCache;
+    private int steps;
     private JsonObject response;
     private int currentStep;
+    private int stepIndex;
     private boolean firstStep;
+    private Location callLocation;
+    private boolean fieldModified;
+    private int unchangedEvents;
 
     /**
-     * Create the tracer with the request, which contains the program source, input and steps to run.
+     * Create the tracer with the request, which contains the program source, input, steps to run, optional scope
+     * options for the inspector, optional coalesce policy, optional lazy flag and optional resource limits. If the
+     * request contains a list of step indices ("snapshots"), only those steps are produced, with full snapshots and
+     * their indices, and the tracer stops after the last of them.
      *
      * @param request request
      */
     public Tracer(final JsonObject request) {
+        this(request, null);
+    }
+
+    /**
+     * Create the tracer with the request and a project already compiled from the request source. If the project is
+     * null, the source is compiled when the tracer runs.
+     *
+     * @param request request
+     * @param project compiled project or null
+     */
+    Tracer(final JsonObject request, final Executor.Project project) {
+        this(request, project, null);
+    }
+
+    /**
+     * Create the tracer with the request, an optional compiled project and an optional session. If a session is
+     * provided, the tracer pauses in the session instead of stopping when the request steps are exhausted.
+     *
+     * @param request request
+     * @param project compiled project or null
+     * @param session session or null
+     */
+    Tracer(final JsonObject request, final Executor.Project project, final Session session) {
         this.source = request.get("source").getAsString();
         this.input = request.get("input").getAsString();
         this.steps = request.get("steps").getAsInt();
-        inspector = new Inspector();
+        this.project = project;
+        this.session = session;
+        this.coalesce = request.has("coalesce")
+            ? Coalesce.valueOf(request.get("coalesce").getAsString().toUpperCase())
+            : Coalesce.NONE;
+        this.lazy = request.has("lazy") && request.get("lazy").getAsBoolean();
+        if (request.has("snapshots")) {
+            this.snapshotSteps = new TreeSet<>();
+            for (final var index : request.get("snapshots").getAsJsonArray()) snapshotSteps.add(index.getAsInt());
+        } else this.snapshotSteps = null;
+        inspector = new Inspector(request.has("scope") ? request.get("scope").getAsJsonObject() : null);
+        governor = new Governor(request.has("limits") ? request.get("limits").getAsJsonObject() : null);
         response = null;
         currentStep = 0;
+        stepIndex = 0;
         firstStep = true;
         printCache = new ArrayList<>();
     }
@@ -56,7 +108,20 @@ public class Tracer {
         response = new JsonObject();
         response.add("steps", new JsonArray());
         try {
-            new Executor().execute(source, this::trace, this::inputHook, this::printHook, this::lockHook);
+            final var executor = new Executor(coalesce != Coalesce.CALLS, coalesce == Coalesce.CHANGES, governor);
+            final var compiled = project != null ? project : executor.compile(source);
+            executor.execute(compiled, this::trace, this::inputHook, this::printHook, this::lockHook);
+        } catch (final SnapshotsCompletedException e) {
+            return response;
+        } catch (final Governor.LimitExceededException e) {
+            final var error = new JsonObject();
+            error.addProperty("cause", e.getMessage());
+            error.addProperty("limit", e.limit);
+            final var step = new JsonObject();
+            step.add("error", error);
+            step.addProperty("print", String.join("", printCache));
+            response.get("steps").getAsJsonArray().add(step);
+            return response;
         } catch (Executor.ApplicationExternalException | TracerStopException e) {
             final var error = new JsonObject();
             error.addProperty("cause", e.getMessage());
@@ -97,19 +162,22 @@ public class Tracer {
 
     /**
      * Trace the event. trace() may stop the tracing process if the program reaches the maximum number of steps, it is
-     * done by raising a TraceStopException to stop the Executor. This trace implementation skips the first event of a
-     * program.
+     * done by raising a TraceStopException to stop the Executor. In a session, the tracer pauses with the debugee VM
+     * suspended until the next page of steps is requested instead. This trace implementation skips the first event of
+     * a program.
      *
      * @param event event where the stack and heap data will be extracted from.
      * @throws PrintedException
      * @throws TracerStopException
      * @throws IncompatibleThreadStateException
+     * @throws InterruptedException
      */
     private void trace(final Event event)
         throws PrintedException,
         TracerStopException,
         IncompatibleThreadStateException,
-        AbsentInformationException {
+        AbsentInformationException,
+        InterruptedException {
         // check errors print in stdout or stderr in non Locatable frames
         if (
             (event instanceof VMStartEvent ||
@@ -120,25 +188,67 @@ public class Tracer {
         ) {
             // exception printed in the error stream is collected to be shown inside a threw object
             final var exceptionTraceback = String.join("", this.printCache);
+            // threads like Common-Cleaner may start while the program output was not collected by a step yet
+            if (event instanceof ThreadStartEvent && !exceptionTraceback.contains("Exception in thread ")) return;
             this.printCache.clear();
             if (exceptionTraceback.contains("Picked up JAVA_TOOL_OPTIONS:")) return;
             throw new PrintedException(exceptionTraceback);
         }
         if (!(event instanceof LocatableEvent) || !((LocatableEvent) event).thread().name().equals("main")) return;
-        if (
-            this.currentStep++ >= this.steps
-        ) throw new TracerStopException("Program too long, maximum steps allowed: " + this.steps);
+        // the field is not modified yet, the change is shown in the next step
+        if (event instanceof ModificationWatchpointEvent) {
+            fieldModified = true;
+            return;
+        }
+        // the first line of a called method is at the same location of the call event, with no code executed between
+        final var location = ((LocatableEvent) event).location();
+        final var coalesced = coalesce != Coalesce.NONE &&
+            event instanceof StepEvent &&
+            location.equals(callLocation) &&
+            this.printCache.isEmpty();
+        callLocation = event instanceof MethodEntryEvent ? location : null;
+        if (coalesced) return;
+        if (coalesce == Coalesce.CHANGES) {
+            final var changed = inspector.variablesChanged((LocatableEvent) event) ||
+                fieldModified ||
+                !this.printCache.isEmpty() ||
+                !(event instanceof StepEvent);
+            if (!changed) {
+                if (++unchangedEvents > MAX_UNCHANGED_EVENTS)
+                    throw new TracerStopException("Program too long, no changes in " + MAX_UNCHANGED_EVENTS + " lines");
+                return;
+            }
+            fieldModified = false;
+            unchangedEvents = 0;
+        }
+        if (this.currentStep++ >= this.steps) {
+            if (session == null) throw new TracerStopException("Program too long, maximum steps allowed: " + this.steps);
+            this.steps += session.next(response);
+            response = new JsonObject();
+            response.add("steps", new JsonArray());
+        }
         if (firstStep) {
             firstStep = false;
             return;
         }
 
-        final var snapshot = inspector.inspect((LocatableEvent) event);
+        final var index = stepIndex++;
+        if (snapshotSteps != null && !snapshotSteps.contains(index)) {
+            inspector.skip();
+            this.printCache.clear();
+            return;
+        }
+
+        final var snapshot = lazy && snapshotSteps == null
+            ? inspector.locate((LocatableEvent) event)
+            : inspector.inspect((LocatableEvent) event);
         final var step = new JsonObject();
+        if (snapshotSteps != null) step.addProperty("index", index);
         step.add("snapshot", snapshot);
         step.addProperty("print", String.join("", printCache));
         response.get("steps").getAsJsonArray().add(step);
         this.printCache.clear();
+        if (snapshotSteps != null && index == snapshotSteps.last()) throw new SnapshotsCompletedException();
     }
 
     /**
@@ -169,6 +279,34 @@ public class Tracer {
         throw new TracerStopException("program requires input or slow function call");
     }
 
+    /**
+     * Policies to reduce the number of inspected events, selected by the request "coalesce" property.
+     */
+    public enum Coalesce {
+        /**
+         * Every event produces a step.
+         */
+        NONE,
+        /**
+         * The line event at the first line of a called method is merged into the call event, which already has the same
+         * location and state. Steps with event "call" are no longer followed by a "line" step at the same line.
+         */
+        LOCATION,
+        /**
+         * Line events are not requested from the debugee, only steps with events "call", "return" and "exception" are
+         * produced. Also merges events like LOCATION.
+         */
+        CALLS,
+        /**
+         * Line events only produce steps if the program state or output changed since the previous event: a variable
+         * of the current frame (or an element of an array it references) or a field of a user class was modified, or
+         * something was printed. Changes made only inside objects of other classes (ex.: adding to a list) are shown
+         * in the next step. Steps with events "call", "return" and "exception" are always produced. Also merges events
+         * like LOCATION.
+         */
+        CHANGES
+    }
+
     /**
      * Exception used to stop the Executor.
      */
@@ -180,6 +318,17 @@ public class Tracer {
         }
     }
 
+    /**
+     * Exception used to stop the Executor when all requested snapshots were produced.
+     */
+    static class SnapshotsCompletedException extends TracerStopException {
+        private static final long serialVersionUID = 1L;
+
+        SnapshotsCompletedException() {
+            super("all snapshots produced");
+        }
+    }
+
     /**
      * Exception used to indicate that the debugee program printed an exception in the error stream. The exception data
      * is captured by the PrintedException. Always happens when the program finishes throwing an exception.
@@ -0,0 +1,38 @@
+package tracer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+
+/**
+ * Warms up a new tracer instance. The first trace of a JVM pays for loading and initializing the compiler, the JDI
+ * implementation, the debugee VM launching and Gson, so a small program is traced before the instance serves its first
+ * request, moving that cost out of it.
+ */
+public class WarmUp {
+    private static final String source = "public class WarmUp {\n" +
+        "    public static void main(String[] args) {\n" +
+        "        int[] values = {1, 2};\n" +
+        "        System.out.println(values[0] + values[1]);\n" +
+        "    }\n" +
+        "}\n";
+
+    private WarmUp() {
+    }
+
+    /**
+     * Trace and serialize a small program, unless the environment variable TRACER_WARMUP is false.
+     *
+     * @return milliseconds spent warming up, 0 if disabled
+     */
+    public static long run() {
+        if (System.getenv().getOrDefault("TRACER_WARMUP", "true").equals("false")) return 0;
+        final var start = System.nanoTime();
+        final var request = new JsonObject();
+        request.addProperty("source", source);
+        request.addProperty("input", "");
+        request.addProperty("steps", 100);
+        new Gson().toJson(new Tracer(request).run());
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
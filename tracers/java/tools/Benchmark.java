@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import tracer.Tracer;
+
+
+/**
+ * Macro benchmark of the java tracer. Traces each program of the corpus (bench/NAME.java with input bench/NAME.txt)
+ * through Tracer.run and reports the median of the runs of: wall time, steps, steps per second, mean and p95
+ * inspection time per step (from the tracer.Inspect flight recorder events), response bytes, bytes allocated by the
+ * tracing thread, heap retained by the response (after a full gc) and peak resident memory of the tracer and debugee
+ * JVMs. The report is saved as json to be compared with later runs.
+ *
+ * Options (all optional):
+ * --programs DIR      corpus directory (bench)
+ * --only NAME[,NAME]  programs to run (all)
+ * --steps N           steps of each trace (10000)
+ * --runs N            runs of each program, the median is reported (3)
+ * --coalesce POLICY   coalesce policy of the traces (none)
+ * --lazy BOOLEAN      trace only locations and frame names of the steps (false)
+ * --report FILE       where the report is saved (target/benchmark.json)
+ * --baseline FILE     previous report to compare with
+ */
+public class Benchmark {
+    private static final String[] metrics = {
+        "wallMs", "steps", "stepsPerSecond", "inspectMeanMs", "inspectP95Ms", "responseBytes", "allocatedMb",
+        "retainedMb", "peakRssMb"
+    };
+
+    public static void main(String[] args) throws Exception {
+        var options = ToolUtils.options(args);
+        var directory = Paths.get(options.getOrDefault("programs", "bench"));
+        var only = options.containsKey("only") ? Set.of(options.get("only").split(",")) : null;
+        var steps = Integer.parseInt(options.getOrDefault("steps", "10000"));
+        var runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        var coalesce = options.getOrDefault("coalesce", "none");
+        var lazy = Boolean.parseBoolean(options.getOrDefault("lazy", "false"));
+        var reportPath = Paths.get(options.getOrDefault("report", "target/benchmark.json"));
+
+        var programs = Files
+            .list(directory)
+            .filter(p -> p.toString().endsWith(".java"))
+            .map(p -> p.getFileName().toString().replaceFirst("\\.java$", ""))
+            .filter(name -> only == null || only.contains(name))
+            .sorted()
+            .collect(Collectors.toList());
+
+        // the first traces pay for the tracer and flight recorder initialization, that may even stop them
+        var warmUp = new JsonObject();
+        warmUp.addProperty("source", "public class WarmUp { public static void main(String[] args) { int i = 0; } }");
+        warmUp.addProperty("input", "");
+        warmUp.addProperty("steps", steps);
+        for (var run = 0; run < 3; run++) measure(warmUp);
+
+        var report = new JsonObject();
+        for (var program : programs) {
+            var request = new JsonObject();
+            var inputPath = directory.resolve(program + ".txt");
+            request.addProperty("source", Files.readString(directory.resolve(program + ".java")));
+            request.addProperty("input", Files.exists(inputPath) ? Files.readString(inputPath) : "");
+            request.addProperty("steps", steps);
+            request.addProperty("coalesce", coalesce);
+            request.addProperty("lazy", lazy);
+            var results = new ArrayList<Map<String, Double>>();
+            for (var run = 0; run < runs; run++) results.add(measure(request));
+            var result = new JsonObject();
+            for (var metric : metrics) {
+                var values = results.stream().map(r -> r.get(metric)).sorted().collect(Collectors.toList());
+                result.addProperty(metric, Math.round(values.get(values.size() / 2) * 100) / 100.0);
+            }
+            report.add(program, result);
+            System.out.println(program + " " + result);
+        }
+
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        Files.writeString(reportPath, new GsonBuilder().setPrettyPrinting().create().toJson(report));
+        System.out.println("report saved to " + reportPath);
+        if (options.containsKey("baseline")) {
+            var baseline = new Gson().fromJson(Files.readString(Paths.get(options.get("baseline"))), JsonObject.class);
+            compare(baseline, report);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Trace the request once, recording its metrics.
+     */
+    private static Map<String, Double> measure(JsonObject request) throws IOException {
+        var peakRss = new AtomicLong();
+        var sampler = Executors.newSingleThreadScheduledExecutor();
+        var pid = ProcessHandle.current().pid();
+        sampler.scheduleAtFixedRate(
+            () -> peakRss.accumulateAndGet(ToolUtils.treeRss(pid), Math::max), 0, 100, TimeUnit.MILLISECONDS
+        );
+        var recording = new Recording();
+        recording.enable("tracer.Inspect").withThreshold(Duration.ZERO);
+        recording.start();
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        var heapBefore = memory.getHeapMemoryUsage().getUsed();
+        var allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        var start = System.nanoTime();
+        var response = new Tracer(request).run();
+        var wall = (System.nanoTime() - start) / 1e9;
+        var allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        recording.stop();
+        sampler.shutdownNow();
+        System.gc();
+        var retained = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+        var responseBytes = new Gson().toJson(response).getBytes(StandardCharsets.UTF_8).length;
+
+        var recordingPath = Files.createTempFile("benchmark", ".jfr");
+        recording.dump(recordingPath);
+        recording.close();
+        var inspections = RecordingFile
+            .readAllEvents(recordingPath)
+            .stream()
+            .filter(e -> e.getEventType().getName().equals("tracer.Inspect"))
+            .map(e -> e.getDuration().toNanos() / 1e6)
+            .sorted()
+            .collect(Collectors.toList());
+        Files.delete(recordingPath);
+
+        var steps = response.getAsJsonArray("steps").size();
+        var result = new HashMap<String, Double>();
+        result.put("wallMs", wall * 1000);
+        result.put("steps", (double) steps);
+        result.put("stepsPerSecond", steps / wall);
+        result.put("inspectMeanMs", inspections.stream().mapToDouble(d -> d).average().orElse(0));
+        result.put(
+            "inspectP95Ms",
+            inspections.isEmpty() ? 0 : inspections.get((int) Math.ceil(0.95 * inspections.size()) - 1)
+        );
+        result.put("responseBytes", (double) responseBytes);
+        result.put("allocatedMb", allocated / 1048576.0);
+        result.put("retainedMb", Math.max(0, retained) / 1048576.0);
+        result.put("peakRssMb", peakRss.get() / 1048576.0);
+        return result;
+    }
+
+    /**
+     * Print the relative change of each metric from the baseline report.
+     */
+    private static void compare(JsonObject baseline, JsonObject report) {
+        System.out.println("change from baseline:");
+        for (var program : report.keySet()) {
+            if (!baseline.has(program)) continue;
+            var line = new StringBuilder(String.format("  %-16s", program));
+            for (var metric : metrics) {
+                if (!baseline.getAsJsonObject(program).has(metric)) continue;
+                var before = baseline.getAsJsonObject(program).get(metric).getAsDouble();
+                var after = report.getAsJsonObject(program).get(metric).getAsDouble();
+                var change = before != 0 ? (after - before) / before * 100 : 0;
+                line.append(String.format(" %s %+.1f%%", metric, change));
+            }
+            System.out.println(line);
+        }
+    }
+
+}
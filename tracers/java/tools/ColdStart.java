@@ -0,0 +1,114 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import com.google.gson.JsonObject;
+
+
+/**
+ * Time to first trace of fresh tracer instances. Each run starts a new JVM that loads Main (as the functions framework
+ * does before serving requests, running its warm-up) and traces a small program, and reports the median of the runs
+ * of: milliseconds from the process start until Main is loaded (ready), milliseconds of the first trace, and
+ * milliseconds from the process start until the first trace finishes. Instances are measured with and without the
+ * warm-up (TRACER_WARMUP) and, if the archive exists (mvn -P cds package), with and without the AppCDS archive.
+ *
+ * Options (all optional):
+ * --runs N            runs of each configuration, the median is reported (5)
+ * --classpath CP      classpath of the instances, must be made of jars to use the archive
+ *                     (target/java-tracer-1.0-SNAPSHOT.jar and target/cds.classpath)
+ * --archive FILE      AppCDS archive (target/tracer.jsa)
+ */
+public class ColdStart {
+    private static final String source = "import java.util.*;\n" +
+        "public class FirstTrace {\n" +
+        "    public static void main(String[] args) {\n" +
+        "        List<Integer> values = new ArrayList<>();\n" +
+        "        for (int i = 0; i < 3; i++) values.add(i * i);\n" +
+        "        System.out.println(values);\n" +
+        "    }\n" +
+        "}\n";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--probe")) {
+            probe();
+            return;
+        }
+        var options = ToolUtils.options(args);
+        var runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        var dependencies = Paths.get("target/cds.classpath");
+        var classpath = options.getOrDefault(
+            "classpath",
+            "target/java-tracer-1.0-SNAPSHOT.jar" +
+                (Files.exists(dependencies) ? File.pathSeparator + Files.readString(dependencies).trim() : "")
+        );
+        var archive = Paths.get(options.getOrDefault("archive", "target/tracer.jsa"));
+
+        var configurations = new LinkedHashMap<String, List<String>>();
+        configurations.put("default", List.of());
+        if (Files.exists(archive)) configurations.put("cds", List.of("-XX:SharedArchiveFile=" + archive));
+        else System.out.println("archive " + archive + " not found, build it with: mvn -P cds package");
+
+        System.out.printf(
+            "%-20s %10s %14s %20s%n", "configuration", "ready ms", "first trace ms", "time to first trace ms"
+        );
+        for (var configuration : configurations.entrySet()) {
+            for (var warmUp : List.of(false, true)) {
+                var results = new ArrayList<long[]>();
+                for (var run = 0; run < runs; run++) results.add(measure(classpath, configuration.getValue(), warmUp));
+                var medians = new long[3];
+                for (var metric = 0; metric < medians.length; metric++) {
+                    var m = metric;
+                    var values = results.stream().map(r -> r[m]).sorted().collect(Collectors.toList());
+                    medians[metric] = values.get(values.size() / 2);
+                }
+                var name = configuration.getKey() + (warmUp ? " + warm-up" : "");
+                System.out.printf("%-20s %10d %14d %20d%n", name, medians[0], medians[1], medians[2]);
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Start an instance and read the times it reports.
+     */
+    private static long[] measure(String classpath, List<String> jvmOptions, boolean warmUp) throws Exception {
+        var command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of("--add-exports", "jdk.jdi/com.sun.tools.jdi=ALL-UNNAMED", "-cp", classpath));
+        command.addAll(List.of("ColdStart", "--probe"));
+        var builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().put("TRACER_WARMUP", Boolean.toString(warmUp));
+        var start = System.currentTimeMillis();
+        var process = builder.start();
+        String line;
+        String times = null;
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            while ((line = reader.readLine()) != null) if (line.startsWith("times ")) times = line;
+        }
+        process.waitFor();
+        if (times == null) throw new IllegalStateException("instance did not report its times: " + command);
+        var parts = times.split(" ");
+        var ready = Long.parseLong(parts[1]) - start;
+        var first = Long.parseLong(parts[2]) - Long.parseLong(parts[1]);
+        return new long[]{ready, first, ready + first};
+    }
+
+    /**
+     * Instance side: load Main and trace the small program, then print the epoch milliseconds of both moments.
+     */
+    private static void probe() throws Exception {
+        Class.forName("Main");
+        var ready = System.currentTimeMillis();
+        var request = new JsonObject();
+        request.addProperty("source", source);
+        request.addProperty("input", "");
+        request.addProperty("steps", 1000);
+        Main.trace(request, false);
+        System.out.println("times " + ready + " " + System.currentTimeMillis());
+        System.exit(0);
+    }
+}
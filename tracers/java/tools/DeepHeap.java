@@ -0,0 +1,103 @@
+import com.google.gson.JsonObject;
+import tracer.Tracer;
+
+
+/**
+ * Inspection of deep heaps. Traces, for each size, a program that builds a linked list of user objects with that many
+ * nodes and passes it to a method, and reports the milliseconds of the trace, the milliseconds per thousand nodes
+ * (without the fixed cost of a trace, measured with a single node) and the heap objects of the last snapshot. The
+ * nodes are cloned and only line events are skipped (coalesce policy calls), so the trace time is dominated by the few
+ * inspections of the whole list. While the list is built, a method without variables is called every 10000 nodes,
+ * otherwise the tracer stops a debugee that runs more than 1 second without events, and only the top frame is
+ * inspected (scope frames 1), so these calls do not inspect the list. The time per thousand nodes must stay about the
+ * same as the size grows, and no size may fail with a StackOverflowError, which a recursive heap traversal would
+ * produce. The cpu time the debugee spends answering the inspections does not count against its cpu limit.
+ *
+ * Options (all optional):
+ * --sizes N[,N]       list sizes (10000,100000,300000)
+ */
+public class DeepHeap {
+    private static final String source = "public class DeepList implements Cloneable {\n" +
+        "    int value;\n" +
+        "    DeepList next;\n" +
+        "\n" +
+        "    public static void main(String[] args) throws Exception {\n" +
+        "        int size = new java.util.Scanner(System.in).nextInt();\n" +
+        "        DeepList prototype = new DeepList();\n" +
+        "        DeepList head = null;\n" +
+        "        for (int i = 0; i < size; i++) {\n" +
+        "            DeepList node = (DeepList) prototype.clone();\n" +
+        "            node.value = i;\n" +
+        "            node.next = head;\n" +
+        "            head = node;\n" +
+        "            if (i % 10000 == 0) building();\n" +
+        "        }\n" +
+        "        inspect(head);\n" +
+        "    }\n" +
+        "\n" +
+        "    static void building() {\n" +
+        "    }\n" +
+        "\n" +
+        "    static void inspect(DeepList head) {\n" +
+        "    }\n" +
+        "}\n";
+
+    public static void main(String[] args) throws Exception {
+        var options = ToolUtils.options(args);
+        var sizes = options.getOrDefault("sizes", "10000,100000,300000").split(",");
+
+        // the first trace pays for the tracer initialization, the second measures the cost of any trace
+        trace(1);
+        var fixed = (long) trace(1)[0];
+        System.out.println("fixed cost of a trace: " + fixed + "ms");
+        System.out.printf("%-10s %10s %14s %12s  %s%n", "nodes", "trace ms", "ms per 1000", "heap objects", "result");
+        var failed = false;
+        for (var size : sizes) {
+            var nodes = Integer.parseInt(size);
+            var result = trace(nodes);
+            var milliseconds = (long) result[0];
+            failed |= !result[2].equals("ok");
+            System.out.printf(
+                "%-10d %10d %14.1f %12d  %s%n",
+                nodes,
+                milliseconds,
+                (milliseconds - fixed) * 1000.0 / nodes,
+                result[1],
+                result[2]
+            );
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Trace the program with a list of the size, returning the milliseconds of the trace, the heap objects of the last
+     * snapshot and the result (ok or the error of the trace).
+     */
+    private static Object[] trace(int nodes) {
+        var request = new JsonObject();
+        request.addProperty("source", source);
+        request.addProperty("input", Integer.toString(nodes));
+        request.addProperty("steps", 1000);
+        request.addProperty("coalesce", "calls");
+        var scope = new JsonObject();
+        scope.addProperty("frames", 1);
+        request.add("scope", scope);
+        var start = System.nanoTime();
+        var steps = new Tracer(request).run().getAsJsonArray("steps");
+        var milliseconds = (System.nanoTime() - start) / 1000000;
+
+        var heapObjects = 0;
+        var result = "ok";
+        for (var element : steps) {
+            var step = element.getAsJsonObject();
+            if (step.has("error")) {
+                var error = step.getAsJsonObject("error");
+                result = error.has("exception")
+                    ? error.getAsJsonObject("exception").get("type").getAsString()
+                    : error.get("cause").getAsString();
+            } else heapObjects = Math.max(heapObjects, step.getAsJsonObject("snapshot").getAsJsonObject("heap").size());
+        }
+        if (result.equals("ok") && heapObjects < nodes) result = "list not fully inspected";
+        return new Object[]{milliseconds, heapObjects, result};
+    }
+}
@@ -0,0 +1,188 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+
+/**
+ * Load generator for the java tracer. Sends a mix of programs to the tracer, either calling Main.trace in this process
+ * or posting requests to a running tracer (ex.: make emulator), and reports throughput, latency percentiles, errors by
+ * cause and peak resident memory of the tracer and its debugee JVMs. Main.trace does not go through the scheduler of
+ * Main.service (capacity, quotas, queue and 429 rejections), only requests posted with --url do.
+ *
+ * Options (all optional):
+ * --url URL           post requests to the tracer at URL instead of tracing in this process
+ * --pid PID           tracer process whose memory is sampled in url mode (this process is sampled otherwise)
+ * --program FILE      java source in the mix, may be repeated, FILE.txt is used as input if it exists (res/Test.java)
+ * --steps N           steps of each request (1000)
+ * --concurrency N     requests in flight at the same time (4)
+ * --rate R            requests started per second, if set the load is open instead of closed (unset)
+ * --requests N        total requests (100)
+ * --duration S        stop starting requests after S seconds (unset)
+ */
+public class LoadTest {
+    private final Map<String, String> options;
+    private final List<JsonObject> mix;
+    private final List<Long> latencies;
+    private final Map<String, Long> causes;
+    private final AtomicLong peakRss;
+    private HttpClient client;
+
+    private LoadTest(Map<String, String> options, List<JsonObject> mix) {
+        this.options = options;
+        this.mix = mix;
+        latencies = Collections.synchronizedList(new ArrayList<>());
+        causes = new ConcurrentHashMap<>();
+        peakRss = new AtomicLong();
+    }
+
+    /**
+     * Run the load, then print the report.
+     */
+    private void run() throws Exception {
+        var url = options.get("url");
+        if (url != null) client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        var pid = options.containsKey("pid") ? Long.parseLong(options.get("pid")) : ProcessHandle.current().pid();
+        var concurrency = Integer.parseInt(options.getOrDefault("concurrency", "4"));
+        var rate = options.containsKey("rate") ? Double.parseDouble(options.get("rate")) : 0;
+        var requests = Integer.parseInt(options.getOrDefault("requests", "100"));
+        var deadline = options.containsKey("duration")
+            ? System.nanoTime() + (long) (Double.parseDouble(options.get("duration")) * 1e9)
+            : Long.MAX_VALUE;
+
+        var sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "rss-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(
+            () -> peakRss.accumulateAndGet(ToolUtils.treeRss(pid), Math::max), 0, 100, TimeUnit.MILLISECONDS
+        );
+
+        // closed load keeps concurrency requests in flight, open load starts requests at a fixed rate
+        var pool = Executors.newFixedThreadPool(rate > 0 ? Math.max(concurrency, 64) : concurrency);
+        var inFlight = new Semaphore(rate > 0 ? Integer.MAX_VALUE : concurrency);
+        var random = new Random(42);
+        var start = System.nanoTime();
+        var started = 0;
+        for (; started < requests && System.nanoTime() < deadline; started++) {
+            if (rate > 0) {
+                var due = start + (long) (started * 1e9 / rate);
+                var wait = due - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            inFlight.acquire();
+            var request = mix.get(random.nextInt(mix.size()));
+            pool.submit(() -> {
+                try {
+                    send(request);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        var elapsed = (System.nanoTime() - start) / 1e9;
+        sampler.shutdownNow();
+        report(started, elapsed, options.containsKey("url") && !options.containsKey("pid"));
+    }
+
+    /**
+     * Send a request and record its latency and outcome.
+     */
+    private void send(JsonObject request) {
+        var requestStart = System.nanoTime();
+        String cause;
+        try {
+            String body;
+            if (client != null) {
+                var httpRequest = HttpRequest
+                    .newBuilder(URI.create(options.get("url")))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(request.toString()))
+                    .build();
+                var httpResponse = client.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+                body = httpResponse.statusCode() == 200 ? httpResponse.body() : null;
+                cause = body == null ? "http " + httpResponse.statusCode() : classify(body);
+            } else {
+                body = Main.trace(request, false);
+                cause = classify(body);
+            }
+        } catch (Exception e) {
+            cause = e.getClass().getName();
+        }
+        latencies.add(System.nanoTime() - requestStart);
+        causes.merge(cause, 1L, Long::sum);
+    }
+
+    /**
+     * Classify a tracer response by the error of its last step: a compilation failure, an exceeded resource limit (by
+     * its name), another stop of the tracer (by its cause, ex.: maximum steps) or an exception (by its type).
+     */
+    private static String classify(String body) {
+        var steps = new Gson().fromJson(body, JsonObject.class).getAsJsonArray("steps");
+        if (steps.size() == 0) return "ok";
+        var error = steps.get(steps.size() - 1).getAsJsonObject().getAsJsonObject("error");
+        if (error == null) return "ok";
+        if (error.has("limit")) return "limit " + error.get("limit").getAsString();
+        if (error.has("cause")) {
+            var cause = error.get("cause").getAsString();
+            return cause.startsWith("Compilation fail") ? "compilation failure" : "stop " + cause;
+        }
+        return "exception " + error.getAsJsonObject("exception").get("type").getAsString();
+    }
+
+    private void report(int requests, double elapsed, boolean rssUnavailable) {
+        var sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("requests:    %d in %.2fs%n", requests, elapsed);
+        System.out.printf("throughput:  %.2f req/s%n", requests / elapsed);
+        System.out.printf(
+            "latency:     p50 %.0fms, p95 %.0fms, p99 %.0fms, max %.0fms%n",
+            percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100)
+        );
+        System.out.println("outcomes:");
+        causes
+            .entrySet()
+            .stream()
+            .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
+            .forEach(e -> System.out.printf("  %-40s %d (%.1f%%)%n", e.getKey(), e.getValue(), 100.0 * e.getValue() / requests));
+        if (rssUnavailable) System.out.println("peak rss:    n/a (use --pid with the tracer process)");
+        else System.out.printf("peak rss:    %.1fMB (tracer and debugee JVMs)%n", peakRss.get() / 1048576.0);
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return 0;
+        var index = (int) Math.ceil(p / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = ToolUtils.options(args);
+        var programs = ToolUtils.values(args, "program");
+        if (programs.isEmpty()) programs.add("res/Test.java");
+        var steps = Integer.parseInt(options.getOrDefault("steps", "1000"));
+        var mix = new ArrayList<JsonObject>();
+        for (var program : programs) {
+            var sourcePath = Path.of(program);
+            var inputPath = Path.of(program.replaceFirst("\\.java$", "") + ".txt");
+            if (program.equals("res/Test.java")) inputPath = Path.of("res/Input.txt");
+            var request = new JsonObject();
+            request.addProperty("source", Files.readString(sourcePath));
+            request.addProperty("input", Files.exists(inputPath) ? Files.readString(inputPath) : "");
+            request.addProperty("steps", steps);
+            mix.add(request);
+        }
+        new LoadTest(options, mix).run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Helpers shared by the development tools: command line options and resident memory of processes.
+ */
+class ToolUtils {
+
+    private ToolUtils() {
+    }
+
+    /**
+     * Parse options in the format --name value. The maven executions forward all options in a single argument, which
+     * is split by whitespace, so values cannot contain spaces.
+     *
+     * @param args command line arguments
+     * @return the value of each option, the last one if an option is repeated
+     */
+    static Map<String, String> options(String[] args) {
+        var options = new HashMap<String, String>();
+        var tokens = tokens(args);
+        for (var i = 0; i + 1 < tokens.length; i += 2) options.put(tokens[i].replaceFirst("^--", ""), tokens[i + 1]);
+        return options;
+    }
+
+    /**
+     * All values of a repeatable option, in the order they were given.
+     *
+     * @param args command line arguments
+     * @param name option name, without the leading --
+     * @return the values of the option
+     */
+    static List<String> values(String[] args, String name) {
+        var values = new ArrayList<String>();
+        var tokens = tokens(args);
+        for (var i = 0; i + 1 < tokens.length; i += 2)
+            if (tokens[i].replaceFirst("^--", "").equals(name)) values.add(tokens[i + 1]);
+        return values;
+    }
+
+    private static String[] tokens(String[] args) {
+        return String.join(" ", args).trim().split("\\s+");
+    }
+
+    /**
+     * Resident memory in bytes of a process and all its descendants (linux only, 0 elsewhere).
+     *
+     * @param pid process id
+     * @return resident bytes, 0 if the process finished
+     */
+    static long treeRss(long pid) {
+        var root = ProcessHandle.of(pid);
+        if (root.isEmpty()) return 0;
+        var rss = processRss(pid);
+        for (var child : (Iterable<ProcessHandle>) root.get().descendants()::iterator) rss += processRss(child.pid());
+        return rss;
+    }
+
+    private static long processRss(long pid) {
+        try {
+            for (var line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status")))
+                if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        } catch (IOException | NumberFormatException e) {
+            // process finished or no procfs
+        }
+        return 0;
+    }
+}